@@ -0,0 +1,44 @@
+const zlib = require('zlib');
+
+// Bodies smaller than this are sent as they are; compressing them saves
+// less than the headers cost
+const DEFAULT_THRESHOLD = 1024;
+
+// Compresses response bodies with gzip or deflate, whichever the client
+// prefers in Accept-Encoding. It hooks res.send, so it covers everything sent
+// through res.json, and it compresses before Express computes the ETag. Each
+// encoding therefore gets its own strong ETag, and If-None-Match still turns
+// an unchanged list into an empty 304. Compression runs on the zlib thread
+// pool, so large lists do not block the event loop.
+const compression = ({ threshold = DEFAULT_THRESHOLD } = {}) => (req, res, next) => {
+    const send = res.send;
+
+    res.send = function (body) {
+        if (typeof body !== 'string' || req.method === 'HEAD' || res.get('Content-Encoding')) {
+            return send.call(this, body);
+        }
+
+        // The body depends on Accept-Encoding even when it goes out uncompressed
+        res.vary('Accept-Encoding');
+        const encoding = req.headers['accept-encoding'] ? req.acceptsEncodings('gzip', 'deflate') : false;
+        if (!encoding || Buffer.byteLength(body) < threshold) {
+            return send.call(this, body);
+        }
+
+        const compress = encoding === 'gzip' ? zlib.gzip : zlib.deflate;
+        compress(body, (error, compressed) => {
+            if (error) {
+                console.error('Error compressing response:', error);
+                send.call(res, body);
+                return;
+            }
+            res.set('Content-Encoding', encoding);
+            send.call(res, compressed);
+        });
+        return this;
+    };
+
+    next();
+};
+
+module.exports = compression;
@@ -45,6 +45,10 @@ const Passenger = sequelize.define('Passenger', {
     profile_image: {
         type: DataTypes.TEXT('long'), // LONGTEXT to support large Base64 encoded images (up to 4GB)
         allowNull: true
+    },
+    profile_thumbnail: {
+        type: DataTypes.TEXT, // Base64 avatar-sized copy of profile_image, made by the client
+        allowNull: true
     }
 }, {
     tableName: 'passengers',
@@ -0,0 +1,24 @@
+const { DataTypes } = require('sequelize');
+const { sequelize } = require('../config/database');
+
+// Records deleted passengers so clients doing a delta sync can remove them locally
+const PassengerTombstone = sequelize.define('PassengerTombstone', {
+    id: {
+        type: DataTypes.INTEGER,
+        primaryKey: true,
+        autoIncrement: true
+    },
+    passenger_id: {
+        type: DataTypes.INTEGER,
+        allowNull: false
+    }
+}, {
+    tableName: 'passenger_tombstones',
+    timestamps: true,
+    updatedAt: false,
+    indexes: [
+        { fields: ['createdAt'] }
+    ]
+});
+
+module.exports = PassengerTombstone;
@@ -1,5 +1,6 @@
 const Passenger = require('./Passenger');
 const Booking = require('./Booking');
+const PassengerTombstone = require('./PassengerTombstone');
 
 // Define relationships
 Passenger.hasMany(Booking, {
@@ -15,5 +16,6 @@ Booking.belongsTo(Passenger, {
 
 module.exports = {
     Passenger,
-    Booking
+    Booking,
+    PassengerTombstone
 };
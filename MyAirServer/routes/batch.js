@@ -0,0 +1,54 @@
+// Handler for POST /batch on a resource router. The body is
+//   { "operations": [{ "ref": ..., "op": "create" | "update" | "delete", "id": ..., "data": { ... } }] }
+// Operations run one after another in the given order and each succeeds or
+// fails on its own, so a bad item does not undo the others. The response
+// carries one result per operation with the status and body the single-item
+// route would have sent, plus the caller's ref to match them up.
+
+const MAX_OPERATIONS = 100;
+
+const batch = (handlers) => async (req, res) => {
+    const operations = req.body && req.body.operations;
+
+    if (!Array.isArray(operations) || operations.length === 0) {
+        return res.status(400).json({
+            success: false,
+            message: 'Missing operations array'
+        });
+    }
+    if (operations.length > MAX_OPERATIONS) {
+        return res.status(400).json({
+            success: false,
+            message: `At most ${MAX_OPERATIONS} operations per batch`
+        });
+    }
+
+    const results = [];
+    for (const operation of operations) {
+        const ref = operation && operation.ref !== undefined ? operation.ref : null;
+        const handler = operation && Object.prototype.hasOwnProperty.call(handlers, operation.op)
+            ? handlers[operation.op]
+            : null;
+        let result;
+
+        if (!handler) {
+            result = { status: 400, body: { success: false, message: 'Unknown op: ' + (operation && operation.op) } };
+        } else if (operation.op !== 'create' && !operation.id) {
+            result = { status: 400, body: { success: false, message: 'Missing id' } };
+        } else {
+            result = await handler(operation);
+        }
+
+        results.push({ ref, status: result.status, ...result.body });
+    }
+
+    res.json({
+        success: true,
+        count: results.length,
+        results
+    });
+};
+
+batch.MAX_OPERATIONS = MAX_OPERATIONS;
+
+module.exports = batch;
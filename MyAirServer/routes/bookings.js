@@ -1,6 +1,7 @@
 const express = require('express');
 const router = express.Router();
 const { Booking, Passenger } = require('../models');
+const batch = require('./batch');
 
 // GET all bookings
 router.get('/', async (req, res) => {
@@ -37,9 +38,12 @@ router.get('/passenger/:passengerId', async (req, res) => {
                 model: Passenger,
                 as: 'passenger'
             }],
-            order: [['booking_date', 'DESC']]
+            // id breaks ties so the body, and with it the ETag, is stable
+            order: [['booking_date', 'DESC'], ['id', 'DESC']]
         });
 
+        // Clients keep the list, but must revalidate it with If-None-Match
+        res.set('Cache-Control', 'no-cache');
         res.json({
             success: true,
             count: bookings.length,
@@ -86,26 +90,28 @@ router.get('/:id', async (req, res) => {
     }
 });
 
-// POST create new booking
-router.post('/', async (req, res) => {
-    try {
-        const { passenger_id, flight_number, booking_date, seat_number, status } = req.body;
+// Operations shared by the single-item routes and POST /batch. Each resolves
+// to the HTTP status and JSON body the single-item route would send.
 
-        // Validate required fields
-        if (!passenger_id || !flight_number || !booking_date) {
-            return res.status(400).json({
-                success: false,
-                message: 'Missing required fields: passenger_id, flight_number, booking_date'
-            });
-        }
+const createBooking = async (body) => {
+    const { passenger_id, flight_number, booking_date, seat_number, status } = body || {};
 
+    // Validate required fields
+    if (!passenger_id || !flight_number || !booking_date) {
+        return { status: 400, body: {
+            success: false,
+            message: 'Missing required fields: passenger_id, flight_number, booking_date'
+        } };
+    }
+
+    try {
         // Check if passenger exists
         const passenger = await Passenger.findByPk(passenger_id);
         if (!passenger) {
-            return res.status(404).json({
+            return { status: 404, body: {
                 success: false,
                 message: 'Passenger not found'
-            });
+            } };
         }
 
         const booking = await Booking.create({
@@ -124,43 +130,42 @@ router.post('/', async (req, res) => {
             }]
         });
 
-        res.status(201).json({
+        return { status: 201, body: {
             success: true,
             message: 'Booking created successfully',
             data: createdBooking
-        });
+        } };
     } catch (error) {
         console.error('Error creating booking:', error);
-        res.status(500).json({
+        return { status: 500, body: {
             success: false,
             message: 'Error creating booking',
             error: error.message
-        });
+        } };
     }
-});
+};
 
-// PUT update booking
-router.put('/:id', async (req, res) => {
+const updateBooking = async (id, body) => {
     try {
-        const booking = await Booking.findByPk(req.params.id);
+        const booking = await Booking.findByPk(id);
 
         if (!booking) {
-            return res.status(404).json({
+            return { status: 404, body: {
                 success: false,
                 message: 'Booking not found'
-            });
+            } };
         }
 
-        const { passenger_id, flight_number, booking_date, seat_number, status } = req.body;
+        const { passenger_id, flight_number, booking_date, seat_number, status } = body || {};
 
         // If passenger_id is being updated, verify it exists
         if (passenger_id && passenger_id !== booking.passenger_id) {
             const passenger = await Passenger.findByPk(passenger_id);
             if (!passenger) {
-                return res.status(404).json({
+                return { status: 404, body: {
                     success: false,
                     message: 'Passenger not found'
-                });
+                } };
             }
         }
 
@@ -180,47 +185,71 @@ router.put('/:id', async (req, res) => {
             }]
         });
 
-        res.json({
+        return { status: 200, body: {
             success: true,
             message: 'Booking updated successfully',
             data: updatedBooking
-        });
+        } };
     } catch (error) {
         console.error('Error updating booking:', error);
-        res.status(500).json({
+        return { status: 500, body: {
             success: false,
             message: 'Error updating booking',
             error: error.message
-        });
+        } };
     }
-});
+};
 
-// DELETE booking
-router.delete('/:id', async (req, res) => {
+const deleteBooking = async (id) => {
     try {
-        const booking = await Booking.findByPk(req.params.id);
+        const booking = await Booking.findByPk(id);
 
         if (!booking) {
-            return res.status(404).json({
+            return { status: 404, body: {
                 success: false,
                 message: 'Booking not found'
-            });
+            } };
         }
 
         await booking.destroy();
 
-        res.json({
+        return { status: 200, body: {
             success: true,
             message: 'Booking deleted successfully'
-        });
+        } };
     } catch (error) {
         console.error('Error deleting booking:', error);
-        res.status(500).json({
+        return { status: 500, body: {
             success: false,
             message: 'Error deleting booking',
             error: error.message
-        });
+        } };
     }
+};
+
+// POST apply many creates, updates and deletes in one request
+router.post('/batch', batch({
+    create: (operation) => createBooking(operation.data),
+    update: (operation) => updateBooking(operation.id, operation.data),
+    delete: (operation) => deleteBooking(operation.id)
+}));
+
+// POST create new booking
+router.post('/', async (req, res) => {
+    const result = await createBooking(req.body);
+    res.status(result.status).json(result.body);
+});
+
+// PUT update booking
+router.put('/:id', async (req, res) => {
+    const result = await updateBooking(req.params.id, req.body);
+    res.status(result.status).json(result.body);
+});
+
+// DELETE booking
+router.delete('/:id', async (req, res) => {
+    const result = await deleteBooking(req.params.id);
+    res.status(result.status).json(result.body);
 });
 
 module.exports = router;
@@ -1,22 +1,83 @@
 const express = require('express');
 const router = express.Router();
-const { Passenger, Booking } = require('../models');
+const { Op, literal } = require('sequelize');
+const { Passenger, Booking, PassengerTombstone } = require('../models');
+const batch = require('./batch');
+
+// Latest of the given dates as an ISO string, or the fallback when there are none
+const latestTimestamp = (dates, fallback) => {
+    const times = dates.filter(Boolean).map(date => new Date(date).getTime());
+    return times.length > 0 ? new Date(Math.max(...times)).toISOString() : fallback;
+};
+
+// List rows carry the small thumbnail and a URL for the full image instead of
+// the image itself, which is only sent by GET /:id and GET /:id/image
+const LIST_ATTRIBUTES = {
+    exclude: ['profile_image'],
+    include: [[
+        literal("`Passenger`.`profile_image` IS NOT NULL AND `Passenger`.`profile_image` <> ''"),
+        'has_profile_image'
+    ]]
+};
+
+const toListRow = (passenger) => {
+    const { has_profile_image, ...row } = passenger.toJSON();
+    row.profile_image_url = Number(has_profile_image) ? `/api/passengers/${row.id}/image` : null;
+    return row;
+};
 
 // GET all passengers
+// With ?since=<sync_token> only passengers changed at or after that time are
+// returned, together with the ids of passengers deleted since then.
 router.get('/', async (req, res) => {
     try {
+        let since = null;
+        if (req.query.since) {
+            since = new Date(req.query.since);
+            if (isNaN(since.getTime())) {
+                return res.status(400).json({
+                    success: false,
+                    message: 'Invalid since parameter'
+                });
+            }
+        }
+
         const passengers = await Passenger.findAll({
+            where: since ? { updatedAt: { [Op.gte]: since } } : {},
+            attributes: LIST_ATTRIBUTES,
             include: [{
                 model: Booking,
                 as: 'bookings'
             }],
-            order: [['createdAt', 'DESC']]
+            // id breaks ties so the body, and with it the ETag, is stable
+            order: [['createdAt', 'DESC'], ['id', 'DESC'], [{ model: Booking, as: 'bookings' }, 'id', 'ASC']]
         });
 
+        // Timestamps only have second precision, so the window is inclusive and
+        // clients must treat the changes as idempotent upserts
+        let deleted = [];
+        let lastDeletion = null;
+        if (since) {
+            const tombstones = await PassengerTombstone.findAll({
+                where: { createdAt: { [Op.gte]: since } }
+            });
+            deleted = tombstones.map(tombstone => tombstone.passenger_id);
+            lastDeletion = latestTimestamp(tombstones.map(tombstone => tombstone.createdAt), null);
+        } else {
+            lastDeletion = await PassengerTombstone.max('createdAt');
+        }
+
+        // Clients keep the list, but must revalidate it with If-None-Match
+        res.set('Cache-Control', 'no-cache');
         res.json({
             success: true,
             count: passengers.length,
-            data: passengers
+            data: passengers.map(toListRow),
+            deleted,
+            sync_token: latestTimestamp(
+                passengers.map(passenger => passenger.updatedAt).concat([lastDeletion]),
+                since ? since.toISOString() : null
+            )
         });
     } catch (error) {
         console.error('Error fetching passengers:', error);
@@ -59,19 +120,58 @@ router.get('/:id', async (req, res) => {
     }
 });
 
-// POST create new passenger
-router.post('/', async (req, res) => {
+// Android uploads WebP, older clients and the web app JPEG or PNG
+function imageType(image) {
+    if (image.toString('ascii', 0, 4) === 'RIFF' && image.toString('ascii', 8, 12) === 'WEBP') {
+        return 'webp';
+    }
+    return image[0] === 0x89 ? 'png' : 'jpeg';
+}
+
+// GET full profile image as image bytes, for clients that only have the list
+router.get('/:id/image', async (req, res) => {
     try {
-        const { full_name, email, phone, date_of_birth, membership_level, is_active, profile_image } = req.body;
+        const passenger = await Passenger.findByPk(req.params.id, {
+            attributes: ['id', 'profile_image']
+        });
 
-        // Validate required fields
-        if (!full_name || !email || !phone) {
-            return res.status(400).json({
+        if (!passenger || !passenger.profile_image) {
+            return res.status(404).json({
                 success: false,
-                message: 'Missing required fields: full_name, email, phone'
+                message: 'Profile image not found'
             });
         }
 
+        // Tolerate images stored as data URIs
+        const image = Buffer.from(passenger.profile_image.replace(/^data:[^,]*,/, ''), 'base64');
+        res.set('Cache-Control', 'no-cache');
+        res.type(imageType(image));
+        res.send(image);
+    } catch (error) {
+        console.error('Error fetching profile image:', error);
+        res.status(500).json({
+            success: false,
+            message: 'Error fetching profile image',
+            error: error.message
+        });
+    }
+});
+
+// Operations shared by the single-item routes and POST /batch. Each resolves
+// to the HTTP status and JSON body the single-item route would send.
+
+const createPassenger = async (body) => {
+    const { full_name, email, phone, date_of_birth, membership_level, is_active, profile_image, profile_thumbnail } = body || {};
+
+    // Validate required fields
+    if (!full_name || !email || !phone) {
+        return { status: 400, body: {
+            success: false,
+            message: 'Missing required fields: full_name, email, phone'
+        } };
+    }
+
+    try {
         const passenger = await Passenger.create({
             full_name,
             email,
@@ -79,46 +179,54 @@ router.post('/', async (req, res) => {
             date_of_birth,
             membership_level,
             is_active: is_active !== undefined ? is_active : true,
-            profile_image
+            profile_image,
+            profile_thumbnail
         });
 
-        res.status(201).json({
+        return { status: 201, body: {
             success: true,
             message: 'Passenger created successfully',
             data: passenger
-        });
+        } };
     } catch (error) {
         console.error('Error creating passenger:', error);
 
         // Handle unique constraint violation (duplicate email)
         if (error.name === 'SequelizeUniqueConstraintError') {
-            return res.status(409).json({
+            return { status: 409, body: {
                 success: false,
                 message: 'Email already exists'
-            });
+            } };
         }
 
-        res.status(500).json({
+        return { status: 500, body: {
             success: false,
             message: 'Error creating passenger',
             error: error.message
-        });
+        } };
     }
-});
+};
 
-// PUT update passenger
-router.put('/:id', async (req, res) => {
+const updatePassenger = async (id, body) => {
     try {
-        const passenger = await Passenger.findByPk(req.params.id);
+        const passenger = await Passenger.findByPk(id);
 
         if (!passenger) {
-            return res.status(404).json({
+            return { status: 404, body: {
                 success: false,
                 message: 'Passenger not found'
-            });
+            } };
         }
 
-        const { full_name, email, phone, date_of_birth, membership_level, is_active, profile_image } = req.body;
+        const { full_name, email, phone, date_of_birth, membership_level, is_active, profile_image, profile_thumbnail } = body || {};
+
+        // A new image without a thumbnail leaves no thumbnail rather than a stale one
+        let thumbnail = passenger.profile_thumbnail;
+        if (profile_thumbnail !== undefined) {
+            thumbnail = profile_thumbnail;
+        } else if (profile_image !== undefined && profile_image !== passenger.profile_image) {
+            thumbnail = null;
+        }
 
         await passenger.update({
             full_name: full_name || passenger.full_name,
@@ -127,58 +235,84 @@ router.put('/:id', async (req, res) => {
             date_of_birth: date_of_birth !== undefined ? date_of_birth : passenger.date_of_birth,
             membership_level: membership_level || passenger.membership_level,
             is_active: is_active !== undefined ? is_active : passenger.is_active,
-            profile_image: profile_image !== undefined ? profile_image : passenger.profile_image
+            profile_image: profile_image !== undefined ? profile_image : passenger.profile_image,
+            profile_thumbnail: thumbnail
         });
 
-        res.json({
+        return { status: 200, body: {
             success: true,
             message: 'Passenger updated successfully',
             data: passenger
-        });
+        } };
     } catch (error) {
         console.error('Error updating passenger:', error);
 
         if (error.name === 'SequelizeUniqueConstraintError') {
-            return res.status(409).json({
+            return { status: 409, body: {
                 success: false,
                 message: 'Email already exists'
-            });
+            } };
         }
 
-        res.status(500).json({
+        return { status: 500, body: {
             success: false,
             message: 'Error updating passenger',
             error: error.message
-        });
+        } };
     }
-});
+};
 
-// DELETE passenger
-router.delete('/:id', async (req, res) => {
+const deletePassenger = async (id) => {
     try {
-        const passenger = await Passenger.findByPk(req.params.id);
+        const passenger = await Passenger.findByPk(id);
 
         if (!passenger) {
-            return res.status(404).json({
+            return { status: 404, body: {
                 success: false,
                 message: 'Passenger not found'
-            });
+            } };
         }
 
         await passenger.destroy();
+        await PassengerTombstone.create({ passenger_id: passenger.id });
 
-        res.json({
+        return { status: 200, body: {
             success: true,
             message: 'Passenger deleted successfully (bookings also deleted via CASCADE)'
-        });
+        } };
     } catch (error) {
         console.error('Error deleting passenger:', error);
-        res.status(500).json({
+        return { status: 500, body: {
             success: false,
             message: 'Error deleting passenger',
             error: error.message
-        });
+        } };
     }
+};
+
+// POST apply many creates, updates and deletes in one request
+router.post('/batch', batch({
+    create: (operation) => createPassenger(operation.data),
+    update: (operation) => updatePassenger(operation.id, operation.data),
+    delete: (operation) => deletePassenger(operation.id)
+}));
+
+// POST create new passenger
+router.post('/', async (req, res) => {
+    const result = await createPassenger(req.body);
+    res.status(result.status).json(result.body);
+});
+
+// PUT update passenger
+router.put('/:id', async (req, res) => {
+    const result = await updatePassenger(req.params.id, req.body);
+    res.status(result.status).json(result.body);
+});
+
+// DELETE passenger
+router.delete('/:id', async (req, res) => {
+    const result = await deletePassenger(req.params.id);
+    res.status(result.status).json(result.body);
 });
 
 module.exports = router;
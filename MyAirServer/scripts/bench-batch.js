@@ -0,0 +1,91 @@
+// Compares replaying mutations one request at a time with sending them
+// through the batch endpoint. Run against a server started with `npm start`:
+//
+//   node scripts/bench-batch.js [count]    (BASE_URL defaults to http://localhost:3000)
+//
+// Every passenger the script creates is deleted again before it exits.
+
+const BASE_URL = process.env.BASE_URL || 'http://localhost:3000';
+const COUNT = parseInt(process.argv[2], 10) || 1000;
+const BATCH_SIZE = 100;
+
+const request = async (method, path, body) => {
+    const response = await fetch(BASE_URL + path, {
+        method,
+        headers: { 'Content-Type': 'application/json' },
+        body: body !== undefined ? JSON.stringify(body) : undefined
+    });
+    return { status: response.status, body: await response.json() };
+};
+
+const passenger = (run, i) => ({
+    full_name: `Bench Passenger ${i}`,
+    email: `bench-${run}-${i}@example.com`,
+    phone: String(5550000000 + i),
+    membership_level: 'Economy'
+});
+
+const chunks = (items, size) => {
+    const result = [];
+    for (let i = 0; i < items.length; i += size) {
+        result.push(items.slice(i, i + size));
+    }
+    return result;
+};
+
+const perRequest = async (run) => {
+    const ids = [];
+    for (let i = 0; i < COUNT; i++) {
+        const { status, body } = await request('POST', '/api/passengers', passenger(run, i));
+        if (status !== 201) {
+            throw new Error(`Create ${i} failed with ${status}: ${body.message}`);
+        }
+        ids.push(body.data.id);
+    }
+    return ids;
+};
+
+const batched = async (run) => {
+    const ids = [];
+    const indexes = Array.from({ length: COUNT }, (_, i) => i);
+    for (const chunk of chunks(indexes, BATCH_SIZE)) {
+        const { body } = await request('POST', '/api/passengers/batch', {
+            operations: chunk.map(i => ({ ref: i, op: 'create', data: passenger(run, i) }))
+        });
+        for (const result of body.results) {
+            if (!result.success) {
+                throw new Error(`Create ${result.ref} failed with ${result.status}: ${result.message}`);
+            }
+            ids.push(result.data.id);
+        }
+    }
+    return ids;
+};
+
+const cleanUp = async (ids) => {
+    for (const chunk of chunks(ids, BATCH_SIZE)) {
+        await request('POST', '/api/passengers/batch', {
+            operations: chunk.map(id => ({ ref: id, op: 'delete', id }))
+        });
+    }
+};
+
+const time = async (label, fn) => {
+    const start = process.hrtime.bigint();
+    const ids = await fn();
+    const ms = Number(process.hrtime.bigint() - start) / 1e6;
+    console.log(`${label.padEnd(12)} ${COUNT} creates in ${ms.toFixed(0)} ms ` +
+        `(${(COUNT / (ms / 1000)).toFixed(0)} ops/s)`);
+    await cleanUp(ids);
+};
+
+const main = async () => {
+    const run = Date.now();
+    await time('per-request', () => perRequest(`${run}-single`));
+    await time('batch', () => batched(`${run}-batch`));
+};
+
+main().catch(error => {
+    console.error(error.message);
+    process.exit(1);
+});
@@ -0,0 +1,105 @@
+// Measures bytes on the wire and end-to-end latency of GET /api/passengers
+// with and without compression. Run against a server started with `npm start`:
+//
+//   node scripts/bench-compression.js [count]    (BASE_URL defaults to http://localhost:3000)
+//
+// Seeds `count` passengers (default 2000) with small random profile images,
+// like a list of real photo thumbnails, and deletes them again before exiting.
+
+const http = require('http');
+const crypto = require('crypto');
+const zlib = require('zlib');
+
+const BASE_URL = process.env.BASE_URL || 'http://localhost:3000';
+const COUNT = parseInt(process.argv[2], 10) || 2000;
+const IMAGE_BYTES = 3 * 1024;
+const RUNS = 5;
+const BATCH_SIZE = 100;
+
+const batch = async (operations) => {
+    const response = await fetch(BASE_URL + '/api/passengers/batch', {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify({ operations })
+    });
+    return (await response.json()).results;
+};
+
+const seed = async (run) => {
+    const ids = [];
+    for (let start = 0; start < COUNT; start += BATCH_SIZE) {
+        const operations = [];
+        for (let i = start; i < Math.min(start + BATCH_SIZE, COUNT); i++) {
+            operations.push({ ref: i, op: 'create', data: {
+                full_name: `Bench Passenger ${i}`,
+                email: `bench-${run}-${i}@example.com`,
+                phone: String(5550000000 + i),
+                membership_level: 'Economy',
+                profile_image: crypto.randomBytes(IMAGE_BYTES).toString('base64')
+            } });
+        }
+        for (const result of await batch(operations)) {
+            if (!result.success) {
+                throw new Error(`Create ${result.ref} failed with ${result.status}: ${result.message}`);
+            }
+            ids.push(result.data.id);
+        }
+    }
+    return ids;
+};
+
+// Raw http, so the body is counted as it arrives, before any decompression
+const fetchList = (encoding) => new Promise((resolve, reject) => {
+    const start = process.hrtime.bigint();
+    const headers = encoding ? { 'Accept-Encoding': encoding } : {};
+    http.get(BASE_URL + '/api/passengers', { headers }, (response) => {
+        const chunks = [];
+        response.on('data', chunk => chunks.push(chunk));
+        response.on('end', () => {
+            const wire = Buffer.concat(chunks);
+            const contentEncoding = response.headers['content-encoding'];
+            const body = contentEncoding === 'gzip' ? zlib.gunzipSync(wire)
+                : contentEncoding === 'deflate' ? zlib.inflateSync(wire)
+                : wire;
+            JSON.parse(body.toString('utf8'));
+            resolve({
+                wireBytes: wire.length,
+                bodyBytes: body.length,
+                contentEncoding: contentEncoding || 'identity',
+                ms: Number(process.hrtime.bigint() - start) / 1e6
+            });
+        });
+    }).on('error', reject);
+});
+
+const median = (values) => values.slice().sort((a, b) => a - b)[Math.floor(values.length / 2)];
+
+const measure = async (label, encoding) => {
+    const results = [];
+    for (let i = 0; i < RUNS; i++) {
+        results.push(await fetchList(encoding));
+    }
+    const last = results[results.length - 1];
+    console.log(`${label.padEnd(9)} ${last.contentEncoding.padEnd(8)} ` +
+        `${(last.wireBytes / 1024).toFixed(0)} KB on the wire ` +
+        `(${(last.bodyBytes / 1024).toFixed(0)} KB JSON), ` +
+        `median ${median(results.map(result => result.ms)).toFixed(0)} ms over ${RUNS} runs`);
+};
+
+const main = async () => {
+    const ids = await seed(Date.now());
+    try {
+        await measure('plain', null);
+        await measure('gzip', 'gzip');
+        await measure('deflate', 'deflate');
+    } finally {
+        for (let start = 0; start < ids.length; start += BATCH_SIZE) {
+            await batch(ids.slice(start, start + BATCH_SIZE).map(id => ({ ref: id, op: 'delete', id })));
+        }
+    }
+};
+
+main().catch(error => {
+    console.error(error.message);
+    process.exit(1);
+});
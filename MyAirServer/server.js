@@ -3,6 +3,7 @@ const cors = require('cors');
 const bodyParser = require('body-parser');
 const { sequelize, testConnection } = require('./config/database');
 const { Passenger, Booking } = require('./models');
+const compression = require('./middleware/compression');
 
 // Import routes
 const passengerRoutes = require('./routes/passengers');
@@ -12,8 +13,13 @@ const bookingRoutes = require('./routes/bookings');
 const app = express();
 const PORT = process.env.PORT || 3000;
 
+// Strong ETags on every response body, so list endpoints answer an unchanged
+// If-None-Match with an empty 304 instead of the full list
+app.set('etag', 'strong');
+
 // Middleware
 app.use(cors()); // Enable CORS for Android app
+app.use(compression()); // gzip/deflate JSON bodies for clients that accept it
 app.use(bodyParser.json({ limit: '1mb' })); // Parse JSON request bodies (increased limit for images)
 app.use(bodyParser.urlencoded({ extended: true, limit: '1mb' })); // Parse URL-encoded bodies
 
@@ -34,11 +40,12 @@ app.get('/', (req, res) => {
         version: '1.0.0',
         endpoints: {
             passengers: {
-                'GET /api/passengers': 'Get all passengers',
+                'GET /api/passengers': 'Get all passengers (?since=sync_token for changes only)',
                 'GET /api/passengers/:id': 'Get passenger by ID',
                 'POST /api/passengers': 'Create new passenger',
                 'PUT /api/passengers/:id': 'Update passenger',
-                'DELETE /api/passengers/:id': 'Delete passenger'
+                'DELETE /api/passengers/:id': 'Delete passenger',
+                'POST /api/passengers/batch': 'Apply up to 100 creates, updates and deletes'
             },
             bookings: {
                 'GET /api/bookings': 'Get all bookings',
@@ -46,7 +53,8 @@ app.get('/', (req, res) => {
                 'GET /api/bookings/:id': 'Get booking by ID',
                 'POST /api/bookings': 'Create new booking',
                 'PUT /api/bookings/:id': 'Update booking',
-                'DELETE /api/bookings/:id': 'Delete booking'
+                'DELETE /api/bookings/:id': 'Delete booking',
+                'POST /api/bookings/batch': 'Apply up to 100 creates, updates and deletes'
             }
         }
     });
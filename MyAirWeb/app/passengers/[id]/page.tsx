@@ -2,7 +2,7 @@
 
 import { useEffect, useState } from 'react'
 import { useRouter } from 'next/navigation'
-import { passengersApi, bookingsApi } from '@/lib/api'
+import { passengersApi, bookingsApi, imageDataUrl } from '@/lib/api'
 import { Passenger, Booking } from '@/lib/types'
 
 export default function PassengerDetailsPage({ params }: { params: { id: string } }) {
@@ -84,7 +84,7 @@ export default function PassengerDetailsPage({ params }: { params: { id: string
                 <div className="flex items-start gap-6">
                     {passenger.profile_image && (
                         <img
-                            src={`data:image/jpeg;base64,${passenger.profile_image}`}
+                            src={imageDataUrl(passenger.profile_image)}
                             alt={passenger.full_name}
                             className="w-32 h-32 rounded-full object-cover"
                         />
@@ -2,7 +2,7 @@
 
 import { useState } from 'react'
 import { useRouter } from 'next/navigation'
-import { passengersApi } from '@/lib/api'
+import { imageDataUrl, passengersApi } from '@/lib/api'
 import { Passenger } from '@/lib/types'
 
 export default function NewPassengerPage() {
@@ -56,7 +56,7 @@ export default function NewPassengerPage() {
                         <div className="w-32 h-32 rounded-full bg-gray-200 border-4 border-gray-300 overflow-hidden mb-4 flex items-center justify-center">
                             {formData.profile_image ? (
                                 <img
-                                    src={`data:image/jpeg;base64,${formData.profile_image}`}
+                                    src={imageDataUrl(formData.profile_image)}
                                     alt="Preview"
                                     className="w-full h-full object-cover"
                                 />
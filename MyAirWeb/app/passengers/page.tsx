@@ -2,7 +2,7 @@
 
 import { useEffect, useState } from 'react'
 import Link from 'next/link'
-import { passengersApi } from '@/lib/api'
+import { API_BASE_URL, imageDataUrl, passengersApi } from '@/lib/api'
 import { Passenger } from '@/lib/types'
 
 export default function PassengersPage() {
@@ -59,9 +59,11 @@ export default function PassengersPage() {
                 <div className="grid md:grid-cols-2 lg:grid-cols-3 gap-6">
                     {passengers.map((passenger) => (
                         <div key={passenger.id} className="bg-card-bg rounded-lg shadow-md p-6 hover:shadow-xl transition">
-                            {passenger.profile_image && (
+                            {(passenger.profile_thumbnail || passenger.profile_image_url) && (
                                 <img
-                                    src={`data:image/jpeg;base64,${passenger.profile_image}`}
+                                    src={passenger.profile_thumbnail
+                                        ? imageDataUrl(passenger.profile_thumbnail)
+                                        : `${API_BASE_URL}${passenger.profile_image_url}`}
                                     alt={passenger.full_name}
                                     className="w-24 h-24 rounded-full mx-auto mb-4 object-cover border-4 border-united-light-blue"
                                 />
@@ -1,6 +1,6 @@
 // API client for MyAir REST API
 
-const API_BASE_URL = 'http://localhost:3000';
+export const API_BASE_URL = 'http://localhost:3000';
 
 export interface ApiResponse<T> {
     success: boolean;
@@ -9,6 +9,12 @@ export interface ApiResponse<T> {
     message?: string;
 }
 
+// Data URL for a Base64 image, typed by its leading bytes
+export function imageDataUrl(base64: string): string {
+    const type = base64.startsWith('UklGR') ? 'webp' : base64.startsWith('iVBOR') ? 'png' : 'jpeg';
+    return `data:image/${type};base64,${base64}`;
+}
+
 // Passengers API
 export const passengersApi = {
     async getAll() {
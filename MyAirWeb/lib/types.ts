@@ -8,7 +8,9 @@ export interface Passenger {
     date_of_birth: string;
     membership_level: 'Economy' | 'Premium' | 'Business' | 'First Class';
     is_active: boolean;
-    profile_image?: string; // Base64 encoded image
+    profile_image?: string; // Base64 encoded image, left out of list responses
+    profile_thumbnail?: string; // Base64 encoded avatar-sized copy
+    profile_image_url?: string | null; // Path of the full image, set in list responses
     createdAt?: string;
     updatedAt?: string;
 }
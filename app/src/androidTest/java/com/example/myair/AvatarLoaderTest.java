@@ -0,0 +1,121 @@
+package com.example.myair;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.view.View;
+import android.widget.ImageView;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that AvatarLoader only hands bitmaps to its pool once neither the
+ * memory cache nor a view holds them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AvatarLoaderTest {
+    private static final long TIMEOUT_MS = 5_000;
+    // Not used by other tests, so the memory cache starts without this key
+    private static final int PASSENGER_ID = 987_654;
+
+    private Instrumentation instrumentation;
+    private Context context;
+    private String imageHash;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = instrumentation.getTargetContext();
+        Bitmap source = Bitmap.createBitmap(300, 300, Bitmap.Config.ARGB_8888);
+        source.eraseColor(0xff3366cc);
+        imageHash = ImageStore.getInstance(context).put(source, Bitmap.CompressFormat.JPEG,
+                ImageUtils.UPLOAD_QUALITY);
+    }
+
+    @Test
+    public void rebind_keepsCachedBitmapOutOfPool() {
+        AvatarLoader loader = AvatarLoader.getInstance();
+        ImageView[] views = new ImageView[2];
+        instrumentation.runOnMainSync(() -> {
+            views[0] = new ImageView(context);
+            views[1] = new ImageView(context);
+            loader.load(views[0], PASSENGER_ID, imageHash);
+        });
+        Bitmap loaded = awaitBitmap(views[0]);
+
+        // The row scrolls away; the bitmap is still in the memory cache
+        instrumentation.runOnMainSync(() -> loader.cancel(views[0]));
+        assertFalse(loader.getPool().contains(loaded));
+
+        // Another row shows the same passenger straight from the cache
+        instrumentation.runOnMainSync(() -> loader.load(views[1], PASSENGER_ID, imageHash));
+        assertSame(loaded, shownBitmap(views[1]));
+        instrumentation.runOnMainSync(() -> loader.cancel(views[1]));
+        assertFalse(loader.getPool().contains(loaded));
+    }
+
+    @Test
+    public void destroyedList_releasesShownAvatars() {
+        AvatarLoader loader = AvatarLoader.getInstance();
+        List<Passenger> passengers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Passenger passenger = new Passenger(PASSENGER_ID + i, "Passenger " + i,
+                    "passenger" + i + "@example.com", "+1555" + i, "1990-01-01", "Economy", true, "");
+            passenger.setThumbnailHash(imageHash);
+            passengers.add(passenger);
+        }
+        RecyclerView[] list = new RecyclerView[1];
+        instrumentation.runOnMainSync(() -> {
+            list[0] = new RecyclerView(context);
+            list[0].setLayoutManager(new LinearLayoutManager(context));
+            PassengerAdapter adapter = new PassengerAdapter(context, null);
+            list[0].setAdapter(adapter);
+            adapter.submitList(passengers);
+            list[0].measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+            list[0].layout(0, 0, 1080, 1920);
+        });
+        assertTrue(list[0].getChildCount() > 0);
+        for (int i = 0; i < list[0].getChildCount(); i++) {
+            awaitBitmap(list[0].getChildAt(i).findViewById(R.id.img_profile));
+        }
+
+        // What PassengerListFragment.onDestroyView does
+        instrumentation.runOnMainSync(() -> list[0].setAdapter(null));
+        instrumentation.runOnMainSync(loader::clearMemoryCache);
+
+        assertEquals(0, loader.getHeldBitmapCount());
+    }
+
+    private Bitmap awaitBitmap(ImageView view) {
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MS;
+        while (SystemClock.elapsedRealtime() < deadline) {
+            Bitmap bitmap = shownBitmap(view);
+            if (bitmap != null) {
+                return bitmap;
+            }
+            SystemClock.sleep(20);
+        }
+        fail("Avatar was not delivered");
+        return null;
+    }
+
+    private Bitmap shownBitmap(ImageView view) {
+        Bitmap[] shown = new Bitmap[1];
+        instrumentation.runOnMainSync(() -> shown[0] = (Bitmap) view.getTag(R.id.tag_avatar_bitmap));
+        return shown[0];
+    }
+}
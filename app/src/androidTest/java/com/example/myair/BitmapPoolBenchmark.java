@@ -0,0 +1,103 @@
+package com.example.myair;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark for decoding avatars into pooled bitmaps the way a
+ * scrolling list does: a screen of rows is visible, and each row that
+ * scrolls away hands its bitmap back before the next one is decoded.
+ * Results are written to logcat under the "BitmapPoolBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BitmapPoolBenchmark {
+    private static final String TAG = "BitmapPoolBenchmark";
+    private static final int AVATARS = 20;
+    private static final int ROWS_DECODED = 200;
+    private static final int VISIBLE_ROWS = 8;
+    private static final int AVATAR_PX = 144;
+    private static final int SOURCE_PX = 512;
+
+    private final List<File> files = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        ImageStore imageStore = ImageStore.getInstance(context);
+        Random random = new Random(42);
+        for (int i = 0; i < AVATARS; i++) {
+            Bitmap source = Bitmap.createBitmap(SOURCE_PX, SOURCE_PX, Bitmap.Config.ARGB_8888);
+            source.eraseColor(0xff000000 | random.nextInt(0x1000000));
+            String hash = imageStore.put(source, Bitmap.CompressFormat.JPEG, ImageUtils.UPLOAD_QUALITY);
+            files.add(imageStore.getFile(hash));
+        }
+    }
+
+    @Test
+    public void scrolling_reusesPooledBitmapsAfterFirstScreen() {
+        scroll(null);
+        long plainMs = scroll(null);
+
+        BitmapPool pool = new BitmapPool(4L * 1024 * 1024);
+        long pooledMs = scroll(pool);
+
+        Log.i(TAG, String.format("%d decodes: plain %d ms, pooled %d ms, pool %s",
+                ROWS_DECODED, plainMs, pooledMs, pool));
+
+        // Only the rows of the first screen allocate
+        assertTrue(pool.getMissCount() <= VISIBLE_ROWS);
+        assertTrue(pool.getHitRate() > 0.9);
+    }
+
+    @Test
+    public void decodeSampled_intoPooledBitmapMatchesFreshDecode() {
+        BitmapPool pool = new BitmapPool(4L * 1024 * 1024);
+        Bitmap first = ImageUtils.decodeSampled(files.get(0), AVATAR_PX, AVATAR_PX,
+                Bitmap.Config.RGB_565, pool);
+        pool.put(first);
+
+        Bitmap reused = ImageUtils.decodeSampled(files.get(1), AVATAR_PX, AVATAR_PX,
+                Bitmap.Config.RGB_565, pool);
+        Bitmap fresh = ImageUtils.decodeSampled(files.get(1), AVATAR_PX, AVATAR_PX,
+                Bitmap.Config.RGB_565);
+
+        assertSame(first, reused);
+        assertTrue(fresh.sameAs(reused));
+    }
+
+    // Decode rows in order, returning each bitmap to the pool once it scrolls off screen
+    private long scroll(BitmapPool pool) {
+        ArrayDeque<Bitmap> visible = new ArrayDeque<>();
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < ROWS_DECODED; i++) {
+            if (visible.size() == VISIBLE_ROWS) {
+                Bitmap recycled = visible.removeFirst();
+                if (pool != null) {
+                    pool.put(recycled);
+                }
+            }
+            Bitmap bitmap = ImageUtils.decodeSampled(files.get(i % AVATARS), AVATAR_PX, AVATAR_PX,
+                    Bitmap.Config.RGB_565, pool);
+            assertNotNull(bitmap);
+            visible.addLast(bitmap);
+        }
+        return SystemClock.elapsedRealtime() - start;
+    }
+}
@@ -0,0 +1,374 @@
+package com.example.myair;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmarks for DatabaseHelper. Results are written to logcat
+ * under the "DatabaseHelperBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseHelperBenchmark {
+    private static final String TAG = "DatabaseHelperBenchmark";
+    private static final String DB_NAME = "benchmark_database.db";
+    private static final int ROWS = 3000;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void persistentConnection_reusesOneDatabaseForEveryCall() {
+        // Old behaviour: every call opened the database and closed it again
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ROWS; i++) {
+            dbHelper.addPassenger(samplePassenger(i));
+            dbHelper.close();
+        }
+        for (int i = 1; i <= ROWS; i++) {
+            dbHelper.getPassenger(i);
+            dbHelper.close();
+        }
+        long openClose = SystemClock.elapsedRealtimeNanos() - start;
+
+        context.deleteDatabase(DB_NAME);
+
+        // Long-lived connection
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ROWS; i++) {
+            dbHelper.addPassenger(samplePassenger(i));
+        }
+        for (int i = 1; i <= ROWS; i++) {
+            dbHelper.getPassenger(i);
+        }
+        long persistent = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(TAG, String.format("open/close per call: %.1f us/op, persistent: %.1f us/op",
+                openClose / 1000.0 / (ROWS * 2), persistent / 1000.0 / (ROWS * 2)));
+
+        // Timings depend on the device, so only the connection reuse is asserted
+        assertEquals(ROWS, dbHelper.getPassengerCount());
+        assertTrue(db.isOpen());
+        assertSame(db, dbHelper.getReadableDatabase());
+    }
+
+    @Test
+    public void applySnapshot_reconcilesInOneTransaction() {
+        List<Passenger> snapshot = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            Passenger passenger = samplePassenger(i);
+            passenger.setId(i);
+            snapshot.add(passenger);
+        }
+
+        // Old behaviour: one autocommit write per row
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (Passenger passenger : snapshot) {
+            dbHelper.addPassengerWithId(passenger);
+        }
+        long perRow = SystemClock.elapsedRealtimeNanos() - start;
+
+        // Close before deleting, the file must not go away under a live connection
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        assertEquals(0, dbHelper.getPassengerCount());
+
+        DatabaseHelper.SyncReport initial = dbHelper.applySnapshot(snapshot);
+        assertEquals(ROWS, initial.inserted);
+
+        // Second snapshot: drop the first 100 rows, rename the rest, add 100 new ones
+        List<Passenger> next = new ArrayList<>(snapshot.subList(100, ROWS));
+        for (Passenger passenger : next) {
+            passenger.setFullName(passenger.getFullName() + " (updated)");
+        }
+        for (int i = ROWS + 1; i <= ROWS + 100; i++) {
+            Passenger passenger = samplePassenger(i);
+            passenger.setId(i);
+            next.add(passenger);
+        }
+        DatabaseHelper.SyncReport report = dbHelper.applySnapshot(next);
+
+        Log.i(TAG, String.format("per-row autocommit insert of %d rows: %d ms, snapshot: %s, resync: %s",
+                ROWS, perRow / 1_000_000, initial, report));
+
+        assertEquals(100, report.inserted);
+        assertEquals(ROWS - 100, report.updated);
+        assertEquals(100, report.deleted);
+        assertEquals(ROWS, dbHelper.getPassengerCount());
+        assertNull(dbHelper.getPassenger(1));
+        assertEquals("Passenger 101 (updated)", dbHelper.getPassenger(101).getFullName());
+    }
+
+    @Test
+    public void applyChanges_keepsDownloadedImageWhileThumbnailIsUnchanged() {
+        // Base64 of "thumbnail", "other thumbnail" and "full image"
+        String thumbnail = "dGh1bWJuYWls";
+        String otherThumbnail = "b3RoZXIgdGh1bWJuYWls";
+        Passenger row = samplePassenger(1);
+        row.setId(1);
+        row.setThumbnail(thumbnail);
+        row.setProfileImageUrl("/api/passengers/1/image");
+        dbHelper.applySnapshot(listOf(row));
+
+        Passenger stored = dbHelper.getPassenger(1);
+        assertNull(stored.getProfileImageHash());
+        assertTrue(ImageStore.isHash(stored.getThumbnailHash()));
+
+        String fullHash = ImageStore.getInstance(context).putBase64("ZnVsbCBpbWFnZQ==");
+        dbHelper.setProfileImage(1, fullHash);
+        assertTrue(dbHelper.getDueOutboxEntries(Long.MAX_VALUE, 10).isEmpty());
+
+        dbHelper.applySnapshot(listOf(row));
+        assertEquals(fullHash, dbHelper.getPassenger(1).getProfileImageHash());
+
+        // A new thumbnail means a new image on the server, fetch it again
+        row.setThumbnail(otherThumbnail);
+        dbHelper.applySnapshot(listOf(row));
+        assertNull(dbHelper.getPassenger(1).getProfileImageHash());
+    }
+
+    @Test
+    public void applyChanges_deltaCostDependsOnChangedRows() {
+        List<Passenger> snapshot = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            Passenger passenger = samplePassenger(i);
+            passenger.setId(i);
+            snapshot.add(passenger);
+        }
+        dbHelper.applyChanges(new PassengerChanges(snapshot, new ArrayList<>(),
+                "2026-01-01T00:00:00.000Z", true));
+        assertEquals("2026-01-01T00:00:00.000Z", dbHelper.getPassengerSyncToken());
+
+        List<Passenger> changed = new ArrayList<>();
+        Passenger renamed = samplePassenger(5);
+        renamed.setId(5);
+        renamed.setFullName("Renamed");
+        changed.add(renamed);
+        List<Integer> deleted = new ArrayList<>();
+        deleted.add(7);
+
+        PassengerChanges delta = new PassengerChanges(changed, deleted, "2026-01-02T00:00:00.000Z", false);
+        delta.setEtag("\"delta-etag\"");
+        DatabaseHelper.SyncReport report = dbHelper.applyChanges(delta);
+        Log.i(TAG, "delta against " + ROWS + " rows: " + report);
+
+        assertEquals(1, report.updated);
+        assertEquals(1, report.deleted);
+        assertEquals(ROWS - 1, dbHelper.getPassengerCount());
+        assertEquals("Renamed", dbHelper.getPassenger(5).getFullName());
+        assertEquals("2026-01-02T00:00:00.000Z", dbHelper.getPassengerSyncToken());
+        assertEquals("\"delta-etag\"", dbHelper.getPassengerSyncState().getEtag());
+    }
+
+    @Test
+    public void bookingLookup_usesPassengerDateIndex() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String plan = explainQueryPlan(db, "SELECT id, passenger_id, flight_number, booking_date,"
+                + " seat_number, status FROM flight_bookings WHERE passenger_id = 1"
+                + " ORDER BY booking_date DESC");
+        assertTrue(plan, plan.contains("idx_bookings_passenger_date"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+
+        plan = explainQueryPlan(db, "SELECT COUNT(*) FROM flight_bookings WHERE passenger_id = 1");
+        assertTrue(plan, plan.contains("idx_bookings_passenger_date"));
+    }
+
+    @Test
+    public void bookingLookup_usesIndexWith100kBookings() {
+        int bookings = 100_000;
+        int passengers = 1000;
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO flight_bookings"
+                + " (passenger_id, flight_number, booking_date, seat_number, status)"
+                + " VALUES (?, ?, ?, '1A', 'Confirmed')");
+        for (int i = 0; i < bookings; i++) {
+            insert.bindLong(1, i % passengers + 1);
+            insert.bindString(2, "UA" + i);
+            insert.bindString(3, String.format("2026-%02d-%02d", i % 12 + 1, i % 28 + 1));
+            insert.executeInsert();
+        }
+        insert.close();
+        db.setTransactionSuccessful();
+        db.endTransaction();
+
+        String lookup = "SELECT id FROM flight_bookings WHERE passenger_id = 1 ORDER BY booking_date DESC";
+        long indexed = timeBookingLookups(passengers);
+        String indexedPlan = explainQueryPlan(db, lookup);
+
+        db.execSQL("DROP INDEX idx_bookings_passenger_date");
+        long scanned = timeBookingLookups(passengers);
+        String scannedPlan = explainQueryPlan(db, lookup);
+
+        Log.i(TAG, String.format("100k bookings, per-passenger lookup: indexed %.1f us, full scan %.1f us",
+                indexed / 1000.0, scanned / 1000.0));
+        // Timings depend on the device, so assert on the plans behind them
+        assertTrue(indexedPlan, indexedPlan.contains("idx_bookings_passenger_date"));
+        assertFalse(scannedPlan, scannedPlan.contains("idx_bookings_passenger_date"));
+        assertTrue(scannedPlan, scannedPlan.contains("SCAN"));
+    }
+
+    @Test
+    public void passengerPages_walkEveryRowOnceNewestFirst() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        for (int i = 1; i <= ROWS; i++) {
+            dbHelper.addPassenger(samplePassenger(i));
+        }
+        db.setTransactionSuccessful();
+        db.endTransaction();
+
+        int pageSize = 50;
+        int seen = 0;
+        int beforeId = DatabaseHelper.FIRST_PAGE;
+        long firstPage = 0;
+        long lastPage = 0;
+        while (true) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            List<Passenger> page = dbHelper.getPassengersPage(beforeId, pageSize);
+            long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+            if (page.isEmpty()) {
+                break;
+            }
+            if (seen == 0) {
+                firstPage = elapsed;
+            }
+            lastPage = elapsed;
+            for (Passenger passenger : page) {
+                assertTrue(passenger.getId() < beforeId);
+                // List rows leave out the detail-only columns
+                assertNull(passenger.getPhone());
+                beforeId = passenger.getId();
+            }
+            seen += page.size();
+        }
+
+        Log.i(TAG, String.format("keyset pages of %d over %d rows: first %.1f us, last %.1f us",
+                pageSize, ROWS, firstPage / 1000.0, lastPage / 1000.0));
+        assertEquals(ROWS, seen);
+
+        String plan = explainQueryPlan(db, "SELECT id, full_name, email, membership_level,"
+                + " profile_image, booking_count FROM passenger_accounts WHERE id < 100"
+                + " ORDER BY id DESC LIMIT 50");
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void search_usesFtsIndexWith100kPassengers() {
+        int passengers = 100_000;
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO passenger_accounts"
+                + " (full_name, email, phone, membership_level) VALUES (?, ?, ?, 'Economy')");
+        for (int i = 1; i <= passengers; i++) {
+            insert.bindString(1, "Passenger " + i);
+            insert.bindString(2, "passenger" + i + "@example.com");
+            insert.bindString(3, "+1555" + i);
+            insert.executeInsert();
+        }
+        insert.close();
+        db.setTransactionSuccessful();
+        db.endTransaction();
+
+        String[] queries = {"passenger 4242", "passenger42424", "+155599"};
+        int rounds = 20;
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < rounds; i++) {
+            for (String query : queries) {
+                assertFalse(query, dbHelper.searchPassengers(query, 50).isEmpty());
+            }
+        }
+        long fts = (SystemClock.elapsedRealtimeNanos() - start) / (rounds * queries.length);
+
+        String[] likes = {"4242", "passenger42424", "+155599"};
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < rounds; i++) {
+            for (String like : likes) {
+                String pattern = "%" + like + "%";
+                Cursor cursor = db.rawQuery("SELECT id, full_name, email, membership_level,"
+                        + " profile_image, booking_count FROM passenger_accounts"
+                        + " WHERE full_name LIKE ? OR email LIKE ? OR phone LIKE ? LIMIT 50",
+                        new String[]{pattern, pattern, pattern});
+                assertTrue(like, cursor.getCount() > 0);
+                cursor.close();
+            }
+        }
+        long like = (SystemClock.elapsedRealtimeNanos() - start) / (rounds * likes.length);
+
+        Log.i(TAG, String.format("100k passengers, search: FTS4 prefix %.2f ms, LIKE '%%x%%' %.2f ms",
+                fts / 1_000_000.0, like / 1_000_000.0));
+
+        // Timings depend on the device, so assert on what search finds and how
+        assertEquals("Passenger 42424", dbHelper.searchPassengers("passenger42424", 50).get(0).getFullName());
+        String ftsPlan = explainQueryPlan(db, "SELECT docid FROM passenger_search"
+                + " WHERE passenger_search MATCH 'passenger* 4242*'");
+        assertTrue(ftsPlan, ftsPlan.contains("VIRTUAL TABLE INDEX"));
+        String likePlan = explainQueryPlan(db, "SELECT id FROM passenger_accounts"
+                + " WHERE full_name LIKE '%4242%' OR email LIKE '%4242%' OR phone LIKE '%4242%'");
+        assertTrue(likePlan, likePlan.contains("SCAN"));
+    }
+
+    // Average nanoseconds per getBookingsByPassengerId call
+    private long timeBookingLookups(int passengers) {
+        int lookups = 200;
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < lookups; i++) {
+            assertEquals(100, dbHelper.getBookingsByPassengerId(i * 7 % passengers + 1).size());
+        }
+        return (SystemClock.elapsedRealtimeNanos() - start) / lookups;
+    }
+
+    static String explainQueryPlan(SQLiteDatabase db, String sql) {
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        int detail = cursor.getColumnIndexOrThrow("detail");
+        while (cursor.moveToNext()) {
+            plan.append(cursor.getString(detail)).append('\n');
+        }
+        cursor.close();
+        return plan.toString();
+    }
+
+    private static List<Passenger> listOf(Passenger passenger) {
+        List<Passenger> passengers = new ArrayList<>();
+        passengers.add(passenger);
+        return passengers;
+    }
+
+    static Passenger samplePassenger(int i) {
+        return new Passenger(0, "Passenger " + i, "passenger" + i + "@example.com",
+                "+1555" + i, "1990-01-01", "Economy", true, "");
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.myair;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Upgrades databases created with every historical schema to the current
+ * version and checks that no data is lost and that the result matches a
+ * fresh install.
+ *
+ * When DATABASE_VERSION is bumped, add the new schema to HISTORICAL_SCHEMAS.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMigrationTest {
+    private static final String DB_NAME = "migration_test.db";
+    private static final String FRESH_DB_NAME = "migration_fresh.db";
+
+    // Base64 of "profile image"
+    private static final String LEGACY_IMAGE = "cHJvZmlsZSBpbWFnZQ==";
+    private static final String IMAGE_HASH =
+            "0000000000000000000000000000000000000000000000000000000000000000";
+    private static final String SYNC_TOKEN = "2026-01-01T00:00:00.000Z";
+
+    private static final String V10_PASSENGERS = "CREATE TABLE passenger_accounts("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT,full_name TEXT NOT NULL,email TEXT NOT NULL,"
+            + "phone TEXT,date_of_birth TEXT,membership_level TEXT,is_active INTEGER DEFAULT 1,"
+            + "profile_image TEXT)";
+    private static final String V10_BOOKINGS = "CREATE TABLE flight_bookings("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT,passenger_id INTEGER NOT NULL,flight_number TEXT,"
+            + "booking_date TEXT,seat_number TEXT,status TEXT,"
+            + "FOREIGN KEY(passenger_id) REFERENCES passenger_accounts(id) ON DELETE CASCADE)";
+    private static final String V11_SYNC_STATE = "CREATE TABLE sync_state("
+            + "key TEXT PRIMARY KEY,value TEXT)";
+
+    private static final String V13_BOOKINGS_INDEX = "CREATE INDEX idx_bookings_passenger_date"
+            + " ON flight_bookings(passenger_id, booking_date)";
+
+    private static final String V14_PASSENGERS = "CREATE TABLE passenger_accounts("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT,full_name TEXT NOT NULL,email TEXT NOT NULL,"
+            + "phone TEXT,date_of_birth TEXT,membership_level TEXT,is_active INTEGER DEFAULT 1,"
+            + "profile_image TEXT,booking_count INTEGER NOT NULL DEFAULT 0)";
+    private static final String V14_BOOKING_INSERTED_TRIGGER = "CREATE TRIGGER trg_booking_count_insert"
+            + " AFTER INSERT ON flight_bookings BEGIN UPDATE passenger_accounts"
+            + " SET booking_count = booking_count + 1 WHERE id = NEW.passenger_id; END";
+    private static final String V14_BOOKING_DELETED_TRIGGER = "CREATE TRIGGER trg_booking_count_delete"
+            + " AFTER DELETE ON flight_bookings BEGIN UPDATE passenger_accounts"
+            + " SET booking_count = booking_count - 1 WHERE id = OLD.passenger_id; END";
+    private static final String V14_BOOKING_MOVED_TRIGGER = "CREATE TRIGGER trg_booking_count_update"
+            + " AFTER UPDATE OF passenger_id ON flight_bookings WHEN OLD.passenger_id <> NEW.passenger_id"
+            + " BEGIN UPDATE passenger_accounts SET booking_count = booking_count - 1"
+            + " WHERE id = OLD.passenger_id; UPDATE passenger_accounts"
+            + " SET booking_count = booking_count + 1 WHERE id = NEW.passenger_id; END";
+    private static final String V14_PASSENGER_INSERTED_TRIGGER = "CREATE TRIGGER"
+            + " trg_booking_count_passenger_insert AFTER INSERT ON passenger_accounts"
+            + " BEGIN UPDATE passenger_accounts SET booking_count = (SELECT COUNT(*) FROM flight_bookings"
+            + " WHERE passenger_id = NEW.id) WHERE id = NEW.id; END";
+    private static final String V14_PASSENGER_ID_TRIGGER = "CREATE TRIGGER"
+            + " trg_booking_count_passenger_id AFTER UPDATE OF id ON passenger_accounts"
+            + " BEGIN UPDATE passenger_accounts SET booking_count = (SELECT COUNT(*) FROM flight_bookings"
+            + " WHERE passenger_id = NEW.id) WHERE id = NEW.id; END";
+
+    private static final String V15_SEARCH = "CREATE VIRTUAL TABLE passenger_search USING fts4("
+            + "content=\"passenger_accounts\", full_name, email, phone, prefix=\"2,3\", tokenize=unicode61)";
+    private static final String V15_SEARCH_INSERTED_TRIGGER = "CREATE TRIGGER trg_passenger_search_insert"
+            + " AFTER INSERT ON passenger_accounts BEGIN INSERT INTO passenger_search(docid, full_name,"
+            + " email, phone) VALUES (NEW.id, NEW.full_name, NEW.email, NEW.phone); END";
+    private static final String V15_SEARCH_BEFORE_UPDATE_TRIGGER = "CREATE TRIGGER"
+            + " trg_passenger_search_before_update BEFORE UPDATE OF id, full_name, email, phone"
+            + " ON passenger_accounts WHEN OLD.id IS NOT NEW.id OR OLD.full_name IS NOT NEW.full_name"
+            + " OR OLD.email IS NOT NEW.email OR OLD.phone IS NOT NEW.phone"
+            + " BEGIN DELETE FROM passenger_search WHERE docid = OLD.id; END";
+    private static final String V15_SEARCH_AFTER_UPDATE_TRIGGER = "CREATE TRIGGER"
+            + " trg_passenger_search_after_update AFTER UPDATE OF id, full_name, email, phone"
+            + " ON passenger_accounts WHEN OLD.id IS NOT NEW.id OR OLD.full_name IS NOT NEW.full_name"
+            + " OR OLD.email IS NOT NEW.email OR OLD.phone IS NOT NEW.phone"
+            + " BEGIN INSERT INTO passenger_search(docid, full_name, email, phone)"
+            + " VALUES (NEW.id, NEW.full_name, NEW.email, NEW.phone); END";
+    private static final String V15_SEARCH_DELETED_TRIGGER = "CREATE TRIGGER trg_passenger_search_delete"
+            + " BEFORE DELETE ON passenger_accounts"
+            + " BEGIN DELETE FROM passenger_search WHERE docid = OLD.id; END";
+
+    private static final String V16_OUTBOX = "CREATE TABLE outbox("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT,entity TEXT NOT NULL,entity_id INTEGER NOT NULL,"
+            + "op TEXT NOT NULL,revision INTEGER NOT NULL DEFAULT 0,in_flight INTEGER NOT NULL DEFAULT 0,"
+            + "attempts INTEGER NOT NULL DEFAULT 0,next_attempt_at INTEGER NOT NULL DEFAULT 0,"
+            + "last_error TEXT,UNIQUE(entity, entity_id))";
+
+    private static final String V17_PASSENGERS = "CREATE TABLE passenger_accounts("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT,full_name TEXT NOT NULL,email TEXT NOT NULL,"
+            + "phone TEXT,date_of_birth TEXT,membership_level TEXT,is_active INTEGER DEFAULT 1,"
+            + "profile_image TEXT,booking_count INTEGER NOT NULL DEFAULT 0,profile_thumbnail TEXT)";
+
+    // Schema of each released database version, as onCreate built it
+    private static final Map<Integer, String[]> HISTORICAL_SCHEMAS = new HashMap<>();
+
+    static {
+        HISTORICAL_SCHEMAS.put(10, new String[]{V10_PASSENGERS, V10_BOOKINGS});
+        HISTORICAL_SCHEMAS.put(11, new String[]{V10_PASSENGERS, V10_BOOKINGS, V11_SYNC_STATE});
+        // 12 kept the tables, profile_image holds an ImageStore hash
+        HISTORICAL_SCHEMAS.put(12, new String[]{V10_PASSENGERS, V10_BOOKINGS, V11_SYNC_STATE});
+        HISTORICAL_SCHEMAS.put(13, new String[]{V10_PASSENGERS, V10_BOOKINGS, V11_SYNC_STATE,
+                V13_BOOKINGS_INDEX});
+        HISTORICAL_SCHEMAS.put(14, new String[]{V14_PASSENGERS, V10_BOOKINGS, V11_SYNC_STATE,
+                V13_BOOKINGS_INDEX, V14_BOOKING_INSERTED_TRIGGER, V14_BOOKING_DELETED_TRIGGER,
+                V14_BOOKING_MOVED_TRIGGER, V14_PASSENGER_INSERTED_TRIGGER, V14_PASSENGER_ID_TRIGGER});
+        HISTORICAL_SCHEMAS.put(15, new String[]{V14_PASSENGERS, V10_BOOKINGS, V11_SYNC_STATE,
+                V13_BOOKINGS_INDEX, V14_BOOKING_INSERTED_TRIGGER, V14_BOOKING_DELETED_TRIGGER,
+                V14_BOOKING_MOVED_TRIGGER, V14_PASSENGER_INSERTED_TRIGGER, V14_PASSENGER_ID_TRIGGER,
+                V15_SEARCH, V15_SEARCH_INSERTED_TRIGGER, V15_SEARCH_BEFORE_UPDATE_TRIGGER,
+                V15_SEARCH_AFTER_UPDATE_TRIGGER, V15_SEARCH_DELETED_TRIGGER});
+        HISTORICAL_SCHEMAS.put(16, new String[]{V14_PASSENGERS, V10_BOOKINGS, V11_SYNC_STATE,
+                V13_BOOKINGS_INDEX, V14_BOOKING_INSERTED_TRIGGER, V14_BOOKING_DELETED_TRIGGER,
+                V14_BOOKING_MOVED_TRIGGER, V14_PASSENGER_INSERTED_TRIGGER, V14_PASSENGER_ID_TRIGGER,
+                V15_SEARCH, V15_SEARCH_INSERTED_TRIGGER, V15_SEARCH_BEFORE_UPDATE_TRIGGER,
+                V15_SEARCH_AFTER_UPDATE_TRIGGER, V15_SEARCH_DELETED_TRIGGER, V16_OUTBOX});
+        HISTORICAL_SCHEMAS.put(17, new String[]{V17_PASSENGERS, V10_BOOKINGS, V11_SYNC_STATE,
+                V13_BOOKINGS_INDEX, V14_BOOKING_INSERTED_TRIGGER, V14_BOOKING_DELETED_TRIGGER,
+                V14_BOOKING_MOVED_TRIGGER, V14_PASSENGER_INSERTED_TRIGGER, V14_PASSENGER_ID_TRIGGER,
+                V15_SEARCH, V15_SEARCH_INSERTED_TRIGGER, V15_SEARCH_BEFORE_UPDATE_TRIGGER,
+                V15_SEARCH_AFTER_UPDATE_TRIGGER, V15_SEARCH_DELETED_TRIGGER, V16_OUTBOX});
+    }
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        context.deleteDatabase(FRESH_DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+        context.deleteDatabase(FRESH_DB_NAME);
+    }
+
+    @Test
+    public void upgradeFromEveryHistoricalVersion_keepsDataAndMatchesFreshSchema() {
+        DatabaseHelper freshHelper = new DatabaseHelper(context, FRESH_DB_NAME);
+        SQLiteDatabase fresh = freshHelper.getWritableDatabase();
+        int currentVersion = fresh.getVersion();
+        Map<String, String> freshSchema = describeSchema(fresh);
+        freshHelper.close();
+
+        for (int version = 10; version < currentVersion; version++) {
+            assertTrue("Missing historical schema for version " + version,
+                    HISTORICAL_SCHEMAS.containsKey(version));
+            createHistoricalDatabase(version);
+
+            DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+            SQLiteDatabase db = helper.getWritableDatabase();
+            String from = "upgrade from " + version + ": ";
+
+            assertEquals(from + "version", currentVersion, db.getVersion());
+            assertEquals(from + "schema", freshSchema, describeSchema(db));
+
+            Passenger passenger = helper.getPassenger(1);
+            assertNotNull(from + "passenger kept", passenger);
+            assertEquals("Ada Lovelace", passenger.getFullName());
+            assertEquals("First Class", passenger.getMembershipLevel());
+            assertTrue(from + "image is a hash", ImageStore.isHash(passenger.getProfileImageHash()));
+            if (version < 12) {
+                File file = ImageStore.getInstance(context).getFile(passenger.getProfileImageHash());
+                assertTrue(from + "image moved to the store", file.exists());
+            }
+
+            assertEquals(from + "bookings kept", 1, helper.getBookingsByPassengerId(1).size());
+            assertEquals(from + "booking count backfilled", 1, passenger.getBookingCount());
+            assertEquals(from + "search index built", 1, helper.searchPassengers("love", 10).size());
+            if (version >= 11) {
+                assertEquals(from + "sync token kept", SYNC_TOKEN, helper.getPassengerSyncToken());
+            }
+
+            helper.close();
+            context.deleteDatabase(DB_NAME);
+        }
+    }
+
+    private void createHistoricalDatabase(int version) {
+        SQLiteDatabase db = context.openOrCreateDatabase(DB_NAME, Context.MODE_PRIVATE, null);
+        for (String statement : HISTORICAL_SCHEMAS.get(version)) {
+            db.execSQL(statement);
+        }
+
+        String image = version < 12 ? LEGACY_IMAGE : IMAGE_HASH;
+        db.execSQL("INSERT INTO passenger_accounts (id, full_name, email, phone, date_of_birth,"
+                        + " membership_level, is_active, profile_image) VALUES (1, ?, ?, ?, ?, ?, 1, ?)",
+                new Object[]{"Ada Lovelace", "ada@example.com", "555-0100", "1815-12-10",
+                        "First Class", image});
+        db.execSQL("INSERT INTO flight_bookings (passenger_id, flight_number, booking_date,"
+                + " seat_number, status) VALUES (1, 'UA100', '2026-05-01', '12A', 'Confirmed')");
+        if (version >= 11) {
+            db.execSQL("INSERT INTO sync_state (key, value) VALUES ('passengers_sync_token', ?)",
+                    new Object[]{SYNC_TOKEN});
+        }
+
+        db.setVersion(version);
+        db.close();
+    }
+
+    /**
+     * Tables are described by their columns (ALTER TABLE and CREATE TABLE
+     * produce different SQL text for the same table), indexes and triggers
+     * by their SQL.
+     */
+    static Map<String, String> describeSchema(SQLiteDatabase db) {
+        Map<String, String> schema = new TreeMap<>();
+        Cursor master = db.rawQuery("SELECT type, name, sql FROM sqlite_master"
+                + " WHERE name NOT LIKE 'sqlite_%' AND name <> 'android_metadata'", null);
+        while (master.moveToNext()) {
+            String type = master.getString(0);
+            String name = master.getString(1);
+            StringBuilder description = new StringBuilder(type).append(':');
+            if (type.equals("table")) {
+                Cursor columns = db.rawQuery("PRAGMA table_info(" + name + ")", null);
+                while (columns.moveToNext()) {
+                    description.append(' ').append(columns.getString(1))
+                            .append(' ').append(columns.getString(2))
+                            .append(columns.getInt(3) == 1 ? " NOT NULL" : "")
+                            .append(columns.isNull(4) ? "" : " DEFAULT " + columns.getString(4))
+                            .append(columns.getInt(5) > 0 ? " PK" : "")
+                            .append(',');
+                }
+                columns.close();
+            } else if (!master.isNull(2)) {
+                description.append(' ').append(master.getString(2).replaceAll("\\s+", " "));
+            }
+            schema.put(name, description.toString());
+        }
+        master.close();
+        return schema;
+    }
+}
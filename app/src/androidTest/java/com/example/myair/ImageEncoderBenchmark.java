@@ -0,0 +1,85 @@
+package com.example.myair;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark for the bytes ImageEncoder produces per passenger,
+ * compared with the fixed JPEG at quality 80 stored before. Results are
+ * written to logcat under the "ImageEncoderBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageEncoderBenchmark {
+    private static final String TAG = "ImageEncoderBenchmark";
+    private static final int PHOTO_SIZE = 1000;
+
+    @Test
+    public void profileImage_isSmallerThanFixedJpegAndWithinBudget() {
+        Bitmap photo = photoLike(PHOTO_SIZE);
+        int maxSize = ImageEncoder.PROFILE_IMAGE.getMaxSize();
+        Bitmap resized = Bitmap.createScaledBitmap(photo, maxSize, maxSize, true);
+
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        resized.compress(Bitmap.CompressFormat.JPEG, ImageUtils.UPLOAD_QUALITY, jpeg);
+        byte[] encoded = ImageEncoder.PROFILE_IMAGE.encode(photo);
+
+        Log.i(TAG, String.format("profile image: JPEG %d KB, encoded %d KB",
+                jpeg.size() / 1024, encoded.length / 1024));
+
+        assertTrue(encoded.length <= 24 * 1024);
+        assertTrue(encoded.length < jpeg.size());
+        Bitmap decoded = BitmapFactory.decodeByteArray(encoded, 0, encoded.length);
+        assertEquals(maxSize, decoded.getWidth());
+    }
+
+    @Test
+    public void thumbnail_fitsBudget() {
+        Bitmap thumbnail = ImageUtils.createThumbnail(photoLike(PHOTO_SIZE), ImageEncoder.THUMBNAIL.getMaxSize());
+
+        byte[] encoded = ImageEncoder.THUMBNAIL.encode(thumbnail);
+
+        Log.i(TAG, String.format("thumbnail: encoded %d bytes", encoded.length));
+        assertTrue(encoded.length <= 6 * 1024);
+    }
+
+    @Test
+    public void lossless_fallsBackToLossyForPhotos() {
+        ImageEncoder encoder = new ImageEncoder(ImageEncoder.Format.WEBP_LOSSLESS, 400, 24 * 1024, 50, 90);
+
+        byte[] encoded = encoder.encode(photoLike(PHOTO_SIZE));
+
+        assertTrue(encoded.length <= 24 * 1024);
+    }
+
+    // Smooth gradients with some grain, closer to a photo than flat colour or pure noise
+    private static Bitmap photoLike(int size) {
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        paint.setShader(new LinearGradient(0, 0, size, size, 0xff3366cc, 0xffffcc99, Shader.TileMode.CLAMP));
+        canvas.drawRect(0, 0, size, size, paint);
+
+        Random random = new Random(42);
+        Paint grain = new Paint();
+        for (int i = 0; i < size * 20; i++) {
+            grain.setColor((random.nextInt(0x40) << 24) | random.nextInt(0x1000000));
+            canvas.drawCircle(random.nextInt(size), random.nextInt(size), 1 + random.nextInt(4), grain);
+        }
+        return bitmap;
+    }
+}
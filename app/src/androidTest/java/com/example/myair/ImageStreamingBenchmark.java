@@ -0,0 +1,129 @@
+package com.example.myair;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Debug;
+import android.util.Base64;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmarks for the streaming Base64 paths in ImageUtils and
+ * ImageStore, measured as bytes allocated on the Java heap while each path
+ * runs. The old paths are reproduced inline for comparison. Results are
+ * written to logcat under the "ImageStreamingBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageStreamingBenchmark {
+    private static final String TAG = "ImageStreamingBenchmark";
+    // Noise compresses badly, so the JPEG is large enough to dominate the allocations
+    private static final int IMAGE_SIZE = 1200;
+    private static final int THUMBNAIL_PX = 144;
+
+    private Context context;
+    private Bitmap bitmap;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        bitmap = noise(IMAGE_SIZE);
+    }
+
+    @Test
+    public void storingBitmap_streamingAllocatesFractionOfByteArrayPath() {
+        ImageStore imageStore = ImageStore.getInstance(context);
+
+        // Warm up both paths so class loading is not measured
+        String expected = storeViaByteArrays(imageStore);
+        assertEquals(expected, imageStore.put(bitmap, Bitmap.CompressFormat.JPEG, ImageUtils.UPLOAD_QUALITY));
+
+        long before = allocatedBytes();
+        storeViaByteArrays(imageStore);
+        long byteArrays = allocatedBytes() - before;
+
+        before = allocatedBytes();
+        String hash = imageStore.put(bitmap, Bitmap.CompressFormat.JPEG, ImageUtils.UPLOAD_QUALITY);
+        long streaming = allocatedBytes() - before;
+
+        long jpegBytes = imageStore.getFile(hash).length();
+        Log.i(TAG, String.format("store %d KB JPEG: byte arrays %d KB, streaming %d KB allocated",
+                jpegBytes / 1024, byteArrays / 1024, streaming / 1024));
+
+        assertEquals(expected, hash);
+        assertTrue(streaming * 4 < byteArrays);
+    }
+
+    @Test
+    public void decodingBase64_streamingAllocatesLessThanByteArrayPath() {
+        // Full size and without a byte budget, so the text is large
+        String base64 = ImageUtils.encodeBase64(bitmap, new ImageEncoder(ImageEncoder.Format.JPEG,
+                IMAGE_SIZE, Long.MAX_VALUE, ImageUtils.UPLOAD_QUALITY, ImageUtils.UPLOAD_QUALITY));
+        assertNotNull(base64);
+
+        Bitmap warmUp = decodeViaByteArray(base64);
+        assertNotNull(warmUp);
+        assertNotNull(ImageUtils.decodeSampled(base64, THUMBNAIL_PX, THUMBNAIL_PX));
+
+        long before = allocatedBytes();
+        Bitmap fromBytes = decodeViaByteArray(base64);
+        long byteArray = allocatedBytes() - before;
+
+        before = allocatedBytes();
+        Bitmap streamed = ImageUtils.decodeSampled(base64, THUMBNAIL_PX, THUMBNAIL_PX);
+        long streaming = allocatedBytes() - before;
+
+        Log.i(TAG, String.format("decode %d KB of Base64: byte array %d KB, streaming %d KB allocated",
+                base64.length() / 1024, byteArray / 1024, streaming / 1024));
+
+        assertEquals(fromBytes.getWidth(), streamed.getWidth());
+        assertEquals(fromBytes.getHeight(), streamed.getHeight());
+        // The decoded JPEG (3/4 of the text) is no longer held in memory
+        assertTrue(byteArray - streaming > base64.length() / 2);
+    }
+
+    // Old upload path: JPEG into a byte[], Base64 into a String, decoded back into a byte[]
+    private String storeViaByteArrays(ImageStore imageStore) {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, ImageUtils.UPLOAD_QUALITY, jpeg);
+        String base64 = Base64.encodeToString(jpeg.toByteArray(), Base64.DEFAULT);
+        return imageStore.put(Base64.decode(base64, Base64.DEFAULT));
+    }
+
+    // Old decode path: the whole image decoded into a byte[] first
+    private static Bitmap decodeViaByteArray(String base64) {
+        byte[] bytes = Base64.decode(base64, Base64.DEFAULT);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        options.inSampleSize = ImageUtils.calculateInSampleSize(options.outWidth, options.outHeight,
+                THUMBNAIL_PX, THUMBNAIL_PX);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    }
+
+    // Total bytes the runtime has allocated on the Java heap so far
+    private static long allocatedBytes() {
+        return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+    }
+
+    private static Bitmap noise(int size) {
+        Random random = new Random(42);
+        int[] pixels = new int[size * size];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        return Bitmap.createBitmap(pixels, size, size, Bitmap.Config.ARGB_8888);
+    }
+}
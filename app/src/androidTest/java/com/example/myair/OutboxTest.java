@@ -0,0 +1,220 @@
+package com.example.myair;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how DatabaseHelper queues, coalesces and completes outbox entries.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OutboxTest {
+    private static final String DB_NAME = "outbox_test.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void editsToOneRow_coalesceIntoOneEntry() {
+        int id = (int) dbHelper.addPassenger(DatabaseHelperBenchmark.samplePassenger(1));
+        Passenger passenger = dbHelper.getPassenger(id);
+        for (int i = 0; i < 5; i++) {
+            passenger.setFullName("Edit " + i);
+            dbHelper.updatePassenger(passenger);
+        }
+
+        List<OutboxEntry> entries = pending();
+        assertEquals(1, entries.size());
+        assertEquals(OutboxEntry.OP_CREATE, entries.get(0).getOp());
+        assertEquals(5, entries.get(0).getRevision());
+    }
+
+    @Test
+    public void deleteBeforeCreateWasSent_leavesNothingToSend() {
+        int id = (int) dbHelper.addPassenger(DatabaseHelperBenchmark.samplePassenger(1));
+        dbHelper.deletePassenger(id);
+
+        assertTrue(pending().isEmpty());
+    }
+
+    @Test
+    public void entriesComeOutInWriteOrder() {
+        int id = (int) dbHelper.addPassenger(DatabaseHelperBenchmark.samplePassenger(1));
+        dbHelper.addBooking(id, "UA100", "2026-05-01", "12A", "Confirmed");
+
+        List<OutboxEntry> entries = pending();
+        assertEquals(2, entries.size());
+        assertEquals(OutboxEntry.ENTITY_PASSENGER, entries.get(0).getEntity());
+        assertEquals(OutboxEntry.ENTITY_BOOKING, entries.get(1).getEntity());
+    }
+
+    @Test
+    public void completedCreate_movesPassengerAndBookingsToServerId() {
+        int localId = (int) dbHelper.addPassenger(DatabaseHelperBenchmark.samplePassenger(1));
+        dbHelper.addBooking(localId, "UA100", "2026-05-01", "12A", "Confirmed");
+        OutboxEntry create = pending().get(0);
+        dbHelper.markOutboxInFlight(create);
+
+        dbHelper.completeOutboxEntry(create, 9000);
+
+        List<Passenger> rows = dbHelper.getPassengersPage(DatabaseHelper.FIRST_PAGE, 10);
+        assertEquals(1, rows.size());
+        assertEquals(9000, rows.get(0).getId());
+        assertEquals(1, dbHelper.getPassenger(9000).getBookingCount());
+        assertEquals(1, dbHelper.getBookingsByPassengerId(9000).size());
+        List<OutboxEntry> entries = pending();
+        assertEquals(1, entries.size());
+        assertEquals(OutboxEntry.ENTITY_BOOKING, entries.get(0).getEntity());
+    }
+
+    @Test
+    public void localIdAfterRemap_stillReachesTheServerRow() {
+        int localId = (int) dbHelper.addPassenger(DatabaseHelperBenchmark.samplePassenger(1));
+        OutboxEntry create = pending().get(0);
+        dbHelper.markOutboxInFlight(create);
+        dbHelper.completeOutboxEntry(create, 9000);
+
+        // An edit screen opened before the remap still holds the local id
+        Passenger passenger = dbHelper.getPassenger(localId);
+        assertEquals(9000, passenger.getId());
+        passenger.setId(localId);
+        passenger.setFullName("Edited after remap");
+        assertEquals(1, dbHelper.updatePassenger(passenger));
+        dbHelper.addBooking(localId, "UA100", "2026-05-01", "12A", "Confirmed");
+
+        assertEquals("Edited after remap", dbHelper.getPassenger(9000).getFullName());
+        assertEquals(1, dbHelper.getBookingsByPassengerId(9000).size());
+        List<OutboxEntry> entries = pending();
+        assertEquals(2, entries.size());
+        assertEquals(OutboxEntry.OP_UPDATE, entries.get(0).getOp());
+        assertEquals(9000, entries.get(0).getEntityId());
+
+        dbHelper.deletePassenger(localId);
+        assertNull(dbHelper.getPassenger(9000));
+    }
+
+    @Test
+    public void editWhileCreateInFlight_isSentAsUpdateAfterwards() {
+        int localId = (int) dbHelper.addPassenger(DatabaseHelperBenchmark.samplePassenger(1));
+        OutboxEntry create = pending().get(0);
+        dbHelper.markOutboxInFlight(create);
+
+        Passenger passenger = dbHelper.getPassenger(localId);
+        passenger.setFullName("Edited mid-flight");
+        dbHelper.updatePassenger(passenger);
+        dbHelper.completeOutboxEntry(create, 9000);
+
+        List<OutboxEntry> entries = pending();
+        assertEquals(1, entries.size());
+        assertEquals(OutboxEntry.OP_UPDATE, entries.get(0).getOp());
+        assertEquals(9000, entries.get(0).getEntityId());
+    }
+
+    @Test
+    public void deleteWhileCreateInFlight_isSentWithServerId() {
+        int localId = (int) dbHelper.addPassenger(DatabaseHelperBenchmark.samplePassenger(1));
+        OutboxEntry create = pending().get(0);
+        dbHelper.markOutboxInFlight(create);
+
+        dbHelper.deletePassenger(localId);
+        dbHelper.completeOutboxEntry(create, 9000);
+
+        List<OutboxEntry> entries = pending();
+        assertEquals(1, entries.size());
+        assertEquals(OutboxEntry.OP_DELETE, entries.get(0).getOp());
+        assertEquals(9000, entries.get(0).getEntityId());
+    }
+
+    @Test
+    public void deferredEntry_blocksLaterEntriesUntilDue() {
+        int id = (int) dbHelper.addPassenger(DatabaseHelperBenchmark.samplePassenger(1));
+        dbHelper.addBooking(id, "UA100", "2026-05-01", "12A", "Confirmed");
+        OutboxEntry create = pending().get(0);
+        dbHelper.markOutboxInFlight(create);
+        dbHelper.deferOutboxEntry(create, 5_000, "timeout");
+
+        assertTrue(dbHelper.getDueOutboxEntries(4_999, 10).isEmpty());
+        assertEquals(5_000, dbHelper.getNextOutboxAttemptAt());
+        assertEquals(2, dbHelper.getDueOutboxEntries(5_000, 10).size());
+    }
+
+    @Test
+    public void syncDoesNotOverwriteOrDeletePendingRows() {
+        int localId = (int) dbHelper.addPassenger(DatabaseHelperBenchmark.samplePassenger(1));
+        Passenger fromServer = DatabaseHelperBenchmark.samplePassenger(2);
+        fromServer.setId(localId);
+        fromServer.setFullName("Server copy");
+
+        dbHelper.applyChanges(new PassengerChanges(new ArrayList<>(Collections.singletonList(fromServer)),
+                new ArrayList<>(), null, false));
+        assertEquals("Passenger 1", dbHelper.getPassenger(localId).getFullName());
+
+        // A snapshot without the unsent row keeps it too
+        dbHelper.applySnapshot(new ArrayList<>());
+        assertNotNull(dbHelper.getPassenger(localId));
+    }
+
+    @Test
+    public void droppedPassengerEntry_forcesFullSyncNext() {
+        Passenger fromServer = DatabaseHelperBenchmark.samplePassenger(1);
+        fromServer.setId(42);
+        dbHelper.applyChanges(new PassengerChanges(new ArrayList<>(Collections.singletonList(fromServer)),
+                new ArrayList<>(), "2026-01-01T00:00:00.000Z", true));
+        assertEquals("2026-01-01T00:00:00.000Z", dbHelper.getPassengerSyncToken());
+
+        // An edit the server rejects leaves the local row unlike the server's
+        Passenger passenger = dbHelper.getPassenger(42);
+        passenger.setFullName("Rejected edit");
+        dbHelper.updatePassenger(passenger);
+        dbHelper.dropOutboxEntry(pending().get(0));
+
+        assertTrue(pending().isEmpty());
+        DatabaseHelper.SyncState state = dbHelper.getPassengerSyncState();
+        assertNull(state.getSyncToken());
+        assertNull(state.getEtag());
+    }
+
+    @Test
+    public void deltaWithPendingRow_doesNotAdvanceSyncToken() {
+        dbHelper.applyChanges(new PassengerChanges(new ArrayList<>(), new ArrayList<>(),
+                "2026-01-01T00:00:00.000Z", true));
+        int localId = (int) dbHelper.addPassenger(DatabaseHelperBenchmark.samplePassenger(1));
+        Passenger fromServer = DatabaseHelperBenchmark.samplePassenger(2);
+        fromServer.setId(localId);
+
+        dbHelper.applyChanges(new PassengerChanges(new ArrayList<>(Collections.singletonList(fromServer)),
+                new ArrayList<>(), "2026-01-02T00:00:00.000Z", false));
+
+        // The skipped server row comes again with the next delta
+        assertEquals("2026-01-01T00:00:00.000Z", dbHelper.getPassengerSyncToken());
+    }
+
+    private List<OutboxEntry> pending() {
+        return dbHelper.getDueOutboxEntries(Long.MAX_VALUE, 100);
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.myair;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.android.volley.Header;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Response;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the streaming passenger list parser with the previous
+ * String + org.json tree approach on a synthetic 5k-passenger payload, and a
+ * gzip-compressed 2k-passenger response with the uncompressed one.
+ * Results are written to logcat under the "PassengerListBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PassengerListRequestBenchmark {
+    private static final String TAG = "PassengerListBenchmark";
+    private static final int PASSENGERS = 5000;
+    private static final int COMPRESSED_PASSENGERS = 2000;
+    private static final int IMAGE_CHARS = 4096;
+
+    @Test
+    public void streamingParse_allocatesLessThanJsonTree() throws Exception {
+        byte[] payload = buildPayload(PASSENGERS);
+
+        HeapSampler sampler = new HeapSampler();
+        long start = SystemClock.elapsedRealtime();
+        List<Passenger> treeResult = parseWithJsonTree(payload);
+        long treeMs = SystemClock.elapsedRealtime() - start;
+        long treePeak = sampler.stop();
+
+        sampler = new HeapSampler();
+        start = SystemClock.elapsedRealtime();
+        PassengerChanges streamResult = PassengerListRequest.parse(
+                new ByteArrayInputStream(payload), "UTF-8", null);
+        long streamMs = SystemClock.elapsedRealtime() - start;
+        long streamPeak = sampler.stop();
+
+        Log.i(TAG, String.format("payload %d KB | org.json: %d ms, peak +%d KB | streaming: %d ms, peak +%d KB",
+                payload.length / 1024, treeMs, treePeak / 1024, streamMs, streamPeak / 1024));
+
+        assertEquals(PASSENGERS, treeResult.size());
+        assertEquals(PASSENGERS, streamResult.getPassengers().size());
+        assertEquals("2026-01-01T00:00:00.000Z", streamResult.getSyncToken());
+        assertTrue(streamResult.isFullSnapshot());
+        Passenger last = streamResult.getPassengers().get(PASSENGERS - 1);
+        assertEquals(PASSENGERS, last.getId());
+        assertEquals("", last.getDateOfBirth());
+        assertEquals(IMAGE_CHARS, last.getProfileImagePath().length());
+        assertTrue(streamPeak < treePeak);
+    }
+
+    @Test
+    public void notModified_deliversNothingToParse() throws Exception {
+        PassengerListRequest request = new PassengerListRequest(ApiConfig.GET_ALL_PASSENGERS,
+                null, "\"v1\"", changes -> { }, error -> { });
+        assertEquals("\"v1\"", request.getHeaders().get("If-None-Match"));
+
+        Response<PassengerChanges> response = request.parseNetworkResponse(new NetworkResponse(
+                HttpURLConnection.HTTP_NOT_MODIFIED, null, true, 0, new ArrayList<>()));
+        assertTrue(response.isSuccess());
+        assertNull(response.result);
+    }
+
+    @Test
+    public void gzipResponse_isSmallerOnTheWireAndParsesTheSame() throws Exception {
+        byte[] payload = buildPayload(COMPRESSED_PASSENGERS);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(payload);
+        }
+        byte[] wire = compressed.toByteArray();
+        PassengerListRequest request = new PassengerListRequest(ApiConfig.GET_ALL_PASSENGERS,
+                null, null, changes -> { }, error -> { });
+        assertEquals("gzip, deflate", request.getHeaders().get("Accept-Encoding"));
+
+        long start = SystemClock.elapsedRealtime();
+        Response<PassengerChanges> plain = request.parseNetworkResponse(
+                new NetworkResponse(200, payload, false, 0, new ArrayList<>()));
+        long plainMs = SystemClock.elapsedRealtime() - start;
+
+        start = SystemClock.elapsedRealtime();
+        Response<PassengerChanges> gzipped = request.parseNetworkResponse(new NetworkResponse(200, wire, false, 0,
+                Collections.singletonList(new Header("Content-Encoding", "gzip"))));
+        long gzipMs = SystemClock.elapsedRealtime() - start;
+
+        Log.i(TAG, String.format("%d passengers | plain: %d KB, parse %d ms | gzip: %d KB, inflate + parse %d ms",
+                COMPRESSED_PASSENGERS, payload.length / 1024, plainMs, wire.length / 1024, gzipMs));
+
+        assertTrue(wire.length < payload.length);
+        assertEquals(COMPRESSED_PASSENGERS, gzipped.result.getPassengers().size());
+        assertEquals(plain.result.getPassengers().get(COMPRESSED_PASSENGERS - 1).getEmail(),
+                gzipped.result.getPassengers().get(COMPRESSED_PASSENGERS - 1).getEmail());
+        assertEquals(plain.result.getSyncToken(), gzipped.result.getSyncToken());
+    }
+
+    // The parsing path used before PassengerListRequest
+    private List<Passenger> parseWithJsonTree(byte[] payload) throws Exception {
+        JSONObject response = new JSONObject(new String(payload, StandardCharsets.UTF_8));
+        JSONArray data = response.getJSONArray("data");
+        List<Passenger> passengers = new ArrayList<>();
+        for (int i = 0; i < data.length(); i++) {
+            JSONObject json = data.getJSONObject(i);
+            Passenger passenger = new Passenger();
+            passenger.setId(json.getInt("id"));
+            passenger.setFullName(json.getString("full_name"));
+            passenger.setEmail(json.getString("email"));
+            passenger.setPhone(json.getString("phone"));
+            passenger.setDateOfBirth(json.optString("date_of_birth", ""));
+            passenger.setMembershipLevel(json.optString("membership_level", "Economy"));
+            passenger.setActive(json.optBoolean("is_active", true));
+            passenger.setProfileImagePath(json.optString("profile_image", ""));
+            passengers.add(passenger);
+        }
+        return passengers;
+    }
+
+    private byte[] buildPayload(int count) throws Exception {
+        char[] image = new char[IMAGE_CHARS];
+        Arrays.fill(image, 'A');
+        String imageString = new String(image);
+
+        StringBuilder json = new StringBuilder("{\"success\":true,\"count\":" + count + ",\"data\":[");
+        for (int i = 1; i <= count; i++) {
+            if (i > 1) {
+                json.append(',');
+            }
+            JSONObject passenger = new JSONObject();
+            passenger.put("id", i);
+            passenger.put("full_name", "Passenger " + i);
+            passenger.put("email", "passenger" + i + "@example.com");
+            passenger.put("phone", "+1555" + i);
+            passenger.put("date_of_birth", JSONObject.NULL);
+            passenger.put("membership_level", "Business");
+            passenger.put("is_active", true);
+            passenger.put("profile_image", imageString);
+            passenger.put("bookings", new JSONArray().put(new JSONObject()
+                    .put("id", i).put("flight_number", "UA" + i)));
+            passenger.put("createdAt", "2026-01-01T00:00:00.000Z");
+            passenger.put("updatedAt", "2026-01-01T00:00:00.000Z");
+            json.append(passenger);
+        }
+        json.append("],\"deleted\":[],\"sync_token\":\"2026-01-01T00:00:00.000Z\"}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Polls the Java heap on a background thread and records the peak above
+     * the starting point.
+     */
+    static class HeapSampler {
+        private final Runtime runtime = Runtime.getRuntime();
+        private final long baseline;
+        private volatile long peak;
+        private volatile boolean running = true;
+        private final Thread thread;
+
+        HeapSampler() {
+            runtime.gc();
+            baseline = used();
+            peak = baseline;
+            thread = new Thread(() -> {
+                while (running) {
+                    peak = Math.max(peak, used());
+                    SystemClock.sleep(1);
+                }
+            });
+            thread.start();
+        }
+
+        long stop() throws InterruptedException {
+            peak = Math.max(peak, used());
+            running = false;
+            thread.join();
+            return peak - baseline;
+        }
+
+        private long used() {
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+}
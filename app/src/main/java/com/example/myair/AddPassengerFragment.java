@@ -1,11 +1,13 @@
 package com.example.myair;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.MediaStore;
 import android.util.Patterns;
 import android.view.LayoutInflater;
@@ -31,13 +33,17 @@ import com.google.android.material.textfield.TextInputLayout;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class AddPassengerFragment extends Fragment {
 
+    private static final int MAX_UPLOAD_SIZE = ImageEncoder.PROFILE_IMAGE.getMaxSize();
+    private static final int THUMBNAIL_SIZE = ImageEncoder.THUMBNAIL.getMaxSize();
+
     private TextInputLayout tilFullName, tilEmail, tilPhone;
     private TextInputEditText etFullName, etEmail, etPhone;
     private TextView tvDateOfBirth;
@@ -46,12 +52,20 @@ public class AddPassengerFragment extends Fragment {
     private ImageView profileImagePreview;
     private Button btnSelectImage, btnSelectDate, btnSave;
 
-    private DatabaseHelper dbHelper;
+    private PassengerRepository repository;
     private String selectedDate = "";
-    private String selectedImagePath = "";
+    // ImageStore hashes of a newly picked image, null to keep the current one.
+    // Pinned in ImageStore until the passenger is saved or the form is reset
+    private String selectedImageHash = null;
+    private String selectedThumbnailHash = null;
     private Passenger editingPassenger = null;
+    // Bumped when a new image is picked or the form is reset, so a stale encode is dropped
+    private int imageGeneration = 0;
 
     private ActivityResultLauncher<Intent> imagePickerLauncher;
+    // Picked images are decoded and encoded here, which takes several compressions
+    private final ExecutorService imageExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     @Nullable
     @Override
@@ -64,11 +78,18 @@ public class AddPassengerFragment extends Fragment {
         setupDatePicker();
         setupSaveButton();
 
-        dbHelper = new DatabaseHelper(getContext());
+        repository = PassengerRepository.getInstance(getContext());
 
         return view;
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        imageExecutor.shutdownNow();
+        releaseSelectedImage();
+    }
+
     private void initViews(View view) {
         tilFullName = view.findViewById(R.id.til_full_name);
         tilEmail = view.findViewById(R.id.til_email);
@@ -95,17 +116,7 @@ public class AddPassengerFragment extends Fragment {
                     if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
                         Uri imageUri = result.getData().getData();
                         if (imageUri != null) {
-                            try {
-                                InputStream inputStream = getContext().getContentResolver().openInputStream(imageUri);
-                                Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-                                profileImagePreview.setImageBitmap(bitmap);
-                                
-                                // Convert image to Base64 string for server storage
-                                selectedImagePath = bitmapToBase64(bitmap);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                                Toast.makeText(getContext(), "Failed to load image", Toast.LENGTH_SHORT).show();
-                            }
+                            storeSelectedImage(imageUri);
                         }
                     }
                 }
@@ -117,27 +128,84 @@ public class AddPassengerFragment extends Fragment {
         });
     }
 
-    private String bitmapToBase64(Bitmap bitmap) {
-        try {
-            // Resize image to reduce Base64 size (max 400x400)
-            int maxSize = 400;
-            int width = bitmap.getWidth();
-            int height = bitmap.getHeight();
-            
-            float scale = Math.min(((float) maxSize / width), ((float) maxSize / height));
-            int newWidth = Math.round(scale * width);
-            int newHeight = Math.round(scale * height);
-            
-            Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, newWidth, newHeight, true);
-            
-            // Convert to Base64
-            java.io.ByteArrayOutputStream byteArrayOutputStream = new java.io.ByteArrayOutputStream();
-            resizedBitmap.compress(Bitmap.CompressFormat.JPEG, 80, byteArrayOutputStream);
-            byte[] byteArray = byteArrayOutputStream.toByteArray();
-            return android.util.Base64.encodeToString(byteArray, android.util.Base64.DEFAULT);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "";
+    private void storeSelectedImage(Uri imageUri) {
+        Context context = requireContext().getApplicationContext();
+        int generation = ++imageGeneration;
+        // Saving waits for the encoded image
+        btnSave.setEnabled(false);
+        imageExecutor.execute(() -> {
+            SelectedImage image = encodeSelectedImage(context, imageUri);
+            mainHandler.post(() -> {
+                if (generation != imageGeneration || getView() == null) {
+                    if (image != null) {
+                        unpin(context, image.imageHash, image.thumbnailHash);
+                    }
+                    return;
+                }
+                btnSave.setEnabled(true);
+                if (image == null) {
+                    Toast.makeText(context, "Failed to load image", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                profileImagePreview.setImageBitmap(image.preview);
+                if (image.imageHash == null) {
+                    Toast.makeText(context, "Failed to save image", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                releaseSelectedImage();
+                selectedImageHash = image.imageHash;
+                selectedThumbnailHash = image.thumbnailHash;
+            });
+        });
+    }
+
+    // Background thread. Null if the image could not be decoded
+    private static SelectedImage encodeSelectedImage(Context context, Uri imageUri) {
+        // Sample down while decoding, the upload is at most MAX_UPLOAD_SIZE anyway
+        Bitmap bitmap = ImageUtils.decodeSampled(context.getContentResolver(), imageUri,
+                MAX_UPLOAD_SIZE, MAX_UPLOAD_SIZE);
+        if (bitmap == null) {
+            return null;
+        }
+
+        // Stored encoded, it is read back as Base64 only when it is sent to the server
+        ImageStore imageStore = ImageStore.getInstance(context);
+        byte[] image = ImageEncoder.PROFILE_IMAGE.encode(bitmap);
+        // Fresh files are safe from retainOnly for a few minutes, the pins outlast that
+        String imageHash = image != null ? imageStore.put(image) : null;
+        imageStore.pin(imageHash);
+        byte[] thumbnail = imageHash != null
+                ? ImageEncoder.THUMBNAIL.encode(ImageUtils.createThumbnail(bitmap, THUMBNAIL_SIZE)) : null;
+        String thumbnailHash = thumbnail != null ? imageStore.put(thumbnail) : null;
+        imageStore.pin(thumbnailHash);
+        return new SelectedImage(bitmap, imageHash, thumbnailHash);
+    }
+
+    // Unpins the picked image, once its row is written or it was discarded
+    private void releaseSelectedImage() {
+        if (selectedImageHash != null || selectedThumbnailHash != null) {
+            unpin(requireContext(), selectedImageHash, selectedThumbnailHash);
+        }
+        selectedImageHash = null;
+        selectedThumbnailHash = null;
+    }
+
+    private static void unpin(Context context, String imageHash, String thumbnailHash) {
+        ImageStore imageStore = ImageStore.getInstance(context);
+        imageStore.unpin(imageHash);
+        imageStore.unpin(thumbnailHash);
+    }
+
+    private static class SelectedImage {
+        final Bitmap preview;
+        // Null if the image could not be encoded or stored
+        final String imageHash;
+        final String thumbnailHash;
+
+        SelectedImage(Bitmap preview, String imageHash, String thumbnailHash) {
+            this.preview = preview;
+            this.imageHash = imageHash;
+            this.thumbnailHash = thumbnailHash;
         }
     }
 
@@ -233,52 +301,64 @@ public class AddPassengerFragment extends Fragment {
         passenger.setDateOfBirth(selectedDate);
         passenger.setMembershipLevel(spinnerMembership.getSelectedItem().toString());
         passenger.setActive(checkboxActive.isChecked());
-        passenger.setProfileImagePath(selectedImagePath);
+        passenger.setProfileImageHash(selectedImageHash);
+        passenger.setThumbnailHash(selectedThumbnailHash);
+
+        // Callbacks may run after the fragment is detached
+        Context context = requireContext().getApplicationContext();
+        // The pins pass to the save and are dropped once the row is written
+        String imageHash = selectedImageHash;
+        String thumbnailHash = selectedThumbnailHash;
+        selectedImageHash = null;
+        selectedThumbnailHash = null;
 
         if (editingPassenger != null) {
             // Update existing passenger
             passenger.setId(editingPassenger.getId());
+            if (imageHash == null) {
+                passenger.setProfileImageHash(editingPassenger.getProfileImageHash());
+                passenger.setThumbnailHash(editingPassenger.getThumbnailHash());
+            }
             
-            // Save to local SQLite first (immediate)
-            dbHelper.updatePassenger(passenger);
-            
-            // Sync with server (async)
-            NetworkService.getInstance(getContext()).updatePassenger(passenger, 
-                new NetworkService.NetworkCallback<org.json.JSONObject>() {
-                    @Override
-                    public void onSuccess(org.json.JSONObject response) {
-                        Toast.makeText(getContext(), R.string.msg_passenger_updated, Toast.LENGTH_SHORT).show();
-                    }
-                    
-                    @Override
-                    public void onError(String error) {
-                        Toast.makeText(getContext(), "Updated locally. Server sync failed: " + error, Toast.LENGTH_LONG).show();
-                    }
-                });
+            // Saved locally, OutboxReplicator sends it to the server
+            repository.updatePassenger(passenger, new PassengerRepository.Callback<Integer>() {
+                @Override
+                public void onResult(Integer rows) {
+                    unpin(context, imageHash, thumbnailHash);
+                    refreshPassengerList();
+                    Toast.makeText(context, R.string.msg_passenger_updated, Toast.LENGTH_SHORT).show();
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    unpin(context, imageHash, thumbnailHash);
+                    Toast.makeText(context, "Failed to save passenger", Toast.LENGTH_SHORT).show();
+                }
+            });
         } else {
             // Add new passenger
-            // Save to local SQLite first (immediate)
-            long id = dbHelper.addPassenger(passenger);
-            passenger.setId((int) id);
-            
-            // Sync with server (async)
-            NetworkService.getInstance(getContext()).createPassenger(passenger, 
-                new NetworkService.NetworkCallback<org.json.JSONObject>() {
-                    @Override
-                    public void onSuccess(org.json.JSONObject response) {
-                        Toast.makeText(getContext(), R.string.msg_passenger_saved, Toast.LENGTH_SHORT).show();
-                    }
-                    
-                    @Override
-                    public void onError(String error) {
-                        Toast.makeText(getContext(), "Saved locally. Server sync failed: " + error, Toast.LENGTH_LONG).show();
-                    }
-                });
+            // Saved locally, OutboxReplicator creates it on the server and adopts the server id
+            repository.addPassenger(passenger, new PassengerRepository.Callback<Long>() {
+                @Override
+                public void onResult(Long id) {
+                    unpin(context, imageHash, thumbnailHash);
+                    refreshPassengerList();
+                    Toast.makeText(context, R.string.msg_passenger_saved, Toast.LENGTH_SHORT).show();
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    unpin(context, imageHash, thumbnailHash);
+                    Toast.makeText(context, "Failed to save passenger", Toast.LENGTH_SHORT).show();
+                }
+            });
         }
 
         clearForm();
-        
-        // Refresh the list in the other fragment
+    }
+
+    private void refreshPassengerList() {
+        // Refresh the list in the other fragment once the local write has landed
         if (getActivity() instanceof PassengerActivity) {
             ((PassengerActivity) getActivity()).refreshPassengerList();
         }
@@ -311,20 +391,21 @@ public class AddPassengerFragment extends Fragment {
         
         checkboxActive.setChecked(passenger.isActive());
         
-        // Load Base64 image
-        selectedImagePath = passenger.getProfileImagePath();
-        if (selectedImagePath != null && !selectedImagePath.isEmpty()) {
-            try {
-                // Decode Base64 to Bitmap
-                byte[] decodedBytes = android.util.Base64.decode(selectedImagePath, android.util.Base64.DEFAULT);
-                Bitmap bitmap = BitmapFactory.decodeByteArray(decodedBytes, 0, decodedBytes.length);
-                if (bitmap != null) {
-                    profileImagePreview.setImageBitmap(bitmap);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                // If decoding fails, keep default image
+        // Keep the stored image unless a new one is picked
+        releaseSelectedImage();
+        imageGeneration++;
+        btnSave.setEnabled(true);
+        String previewHash = passenger.getProfileImageHash() != null
+                ? passenger.getProfileImageHash() : passenger.getThumbnailHash();
+        if (previewHash != null) {
+            // Decode at the size of the preview
+            int size = getResources().getDimensionPixelSize(R.dimen.profile_image_size);
+            File file = ImageStore.getInstance(getContext()).getFile(previewHash);
+            Bitmap bitmap = ImageUtils.decodeSampled(file, size, size, Bitmap.Config.ARGB_8888);
+            if (bitmap != null) {
+                profileImagePreview.setImageBitmap(bitmap);
             }
+            // If decoding fails, keep default image
         }
         
         btnSave.setText(R.string.btn_update);
@@ -341,7 +422,9 @@ public class AddPassengerFragment extends Fragment {
         profileImagePreview.setImageResource(android.R.drawable.ic_menu_gallery);
         
         selectedDate = "";
-        selectedImagePath = "";
+        releaseSelectedImage();
+        imageGeneration++;
+        btnSave.setEnabled(true);
         editingPassenger = null;
         
         btnSave.setText(R.string.btn_save);
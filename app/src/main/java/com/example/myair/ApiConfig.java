@@ -12,10 +12,13 @@ public class ApiConfig {
     
     // Passenger endpoints
     public static final String GET_ALL_PASSENGERS = BASE_URL + "/api/passengers";
+    public static final String GET_PASSENGER_CHANGES = BASE_URL + "/api/passengers?since=";  // + sync token
     public static final String GET_PASSENGER = BASE_URL + "/api/passengers/";  // + id
     public static final String CREATE_PASSENGER = BASE_URL + "/api/passengers";
     public static final String UPDATE_PASSENGER = BASE_URL + "/api/passengers/";  // + id
     public static final String DELETE_PASSENGER = BASE_URL + "/api/passengers/";  // + id
+    public static final String PASSENGER_BATCH = BASE_URL + "/api/passengers/batch";
+    public static final String PROFILE_IMAGE_PATH = "/image";  // GET_PASSENGER + id + this
     
     // Booking endpoints
     public static final String GET_ALL_BOOKINGS = BASE_URL + "/api/bookings";
@@ -24,4 +27,5 @@ public class ApiConfig {
     public static final String CREATE_BOOKING = BASE_URL + "/api/bookings";
     public static final String UPDATE_BOOKING = BASE_URL + "/api/bookings/";  // + id
     public static final String DELETE_BOOKING = BASE_URL + "/api/bookings/";  // + id
+    public static final String BOOKING_BATCH = BASE_URL + "/api/bookings/batch";
 }
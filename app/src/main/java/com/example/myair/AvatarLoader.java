@@ -0,0 +1,219 @@
+package com.example.myair;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads passenger avatars from ImageStore into ImageViews. Decoding happens on
+ * a background pool and decoded bitmaps are kept in a size-bounded memory cache
+ * keyed by passenger id and image content hash, so scrolling back to a row does
+ * not decode the image again. Below it, ThumbnailCache keeps decoded avatars on
+ * disk across restarts.
+ *
+ * Bitmaps are counted while the memory cache, a view or a pending delivery
+ * holds them, and go to a BitmapPool once none does, so later decodes reuse
+ * their memory instead of allocating while the list scrolls.
+ */
+public class AvatarLoader {
+    private static final int DECODE_THREADS = 2;
+    private static final int PLACEHOLDER = android.R.drawable.ic_menu_gallery;
+    // A few screens of recycled list avatars
+    private static final long POOL_BYTES = 4L * 1024 * 1024;
+
+    private static AvatarLoader instance;
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final BitmapPool pool = new BitmapPool(POOL_BYTES);
+    // Holders of each bitmap in use, guarded by this
+    private final Map<Bitmap, Integer> refCounts = new IdentityHashMap<>();
+    private final ExecutorService decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private AvatarLoader() {
+        // Use 1/8th of the available heap for avatars, measured in KB
+        int cacheSize = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+        memoryCache = new LruCache<String, Bitmap>(cacheSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount() / 1024;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                release(oldValue);
+            }
+        };
+    }
+
+    public static synchronized AvatarLoader getInstance() {
+        if (instance == null) {
+            instance = new AvatarLoader();
+        }
+        return instance;
+    }
+
+    /**
+     * Hit and allocation counters of the bitmap pool, for profiling
+     */
+    public BitmapPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Drop every cached avatar. Bitmaps no view shows go to the pool.
+     */
+    public void clearMemoryCache() {
+        memoryCache.evictAll();
+    }
+
+    // Bitmaps the cache, a view or a delivery still holds, for tests
+    synchronized int getHeldBitmapCount() {
+        return refCounts.size();
+    }
+
+    /**
+     * Show the passenger's avatar in the view. A cached bitmap is shown right
+     * away; otherwise the placeholder is shown and swapped for the decoded
+     * image once it is ready, unless the view was rebound in the meantime.
+     */
+    public void load(ImageView imageView, int passengerId, String imageHash) {
+        cancel(imageView);
+
+        if (imageHash == null || imageHash.isEmpty()) {
+            return;
+        }
+
+        String key = passengerId + ":" + imageHash;
+        Bitmap cached;
+        synchronized (this) {
+            // Counted before a decode thread can evict it into the pool
+            cached = memoryCache.get(key);
+            if (cached != null) {
+                acquire(cached);
+            }
+        }
+        if (cached != null) {
+            show(imageView, cached);
+            release(cached);
+            return;
+        }
+
+        int size = imageView.getResources().getDimensionPixelSize(R.dimen.profile_image_thumbnail);
+        Context context = imageView.getContext().getApplicationContext();
+        Future<?> task = decodeExecutor.submit(() -> {
+            // Thumbnails are opaque and small, RGB_565 halves their memory.
+            // Served from the disk cache when decoded before, even in an earlier run
+            Bitmap bitmap = ImageUtils.decodeCached(context, imageHash, size, size, Bitmap.Config.RGB_565, pool);
+            if (bitmap == null) {
+                return;
+            }
+            synchronized (this) {
+                // One count for the cache, one until the delivery below has run
+                acquire(bitmap);
+                acquire(bitmap);
+                memoryCache.put(key, bitmap);
+            }
+            mainHandler.post(() -> {
+                // Only swap if the view still wants this image
+                if (key.equals(imageView.getTag(R.id.tag_avatar_key))) {
+                    show(imageView, bitmap);
+                    imageView.setTag(R.id.tag_avatar_task, null);
+                }
+                release(bitmap);
+            });
+        });
+        imageView.setTag(R.id.tag_avatar_key, key);
+        imageView.setTag(R.id.tag_avatar_task, task);
+    }
+
+    /**
+     * Decode an image at the given size and config on the background pool and
+     * show it in the view once ready, e.g. the large profile image. The view
+     * keeps its current image meanwhile, and a later call for the same view
+     * supersedes this one. The bitmap bypasses the memory cache and the pool.
+     */
+    public void loadImage(ImageView imageView, String imageHash, int size, Bitmap.Config config) {
+        cancelTask(imageView);
+
+        String key = imageHash + "@" + size + ":" + config;
+        Context context = imageView.getContext().getApplicationContext();
+        Future<?> task = decodeExecutor.submit(() -> {
+            // Served from the disk cache when decoded at this size before
+            Bitmap bitmap = ImageUtils.decodeCached(context, imageHash, size, size, config);
+            if (bitmap == null) {
+                return; // Keep the current image if decoding fails
+            }
+            mainHandler.post(() -> {
+                if (key.equals(imageView.getTag(R.id.tag_avatar_key))) {
+                    imageView.setImageBitmap(bitmap);
+                    imageView.setTag(R.id.tag_avatar_task, null);
+                }
+            });
+        });
+        imageView.setTag(R.id.tag_avatar_key, key);
+        imageView.setTag(R.id.tag_avatar_task, task);
+    }
+
+    /**
+     * Cancel a pending load for the view and show the placeholder, e.g. when its
+     * ViewHolder is recycled. The bitmap it showed can then be reused.
+     */
+    public void cancel(ImageView imageView) {
+        cancelTask(imageView);
+        show(imageView, null);
+    }
+
+    private void cancelTask(ImageView imageView) {
+        Object task = imageView.getTag(R.id.tag_avatar_task);
+        if (task instanceof Future) {
+            ((Future<?>) task).cancel(false);
+        }
+        imageView.setTag(R.id.tag_avatar_key, null);
+        imageView.setTag(R.id.tag_avatar_task, null);
+    }
+
+    // Main thread only. The previous bitmap is released once the view no longer draws it
+    private void show(ImageView imageView, Bitmap bitmap) {
+        Object shown = imageView.getTag(R.id.tag_avatar_bitmap);
+        if (shown == bitmap && bitmap != null) {
+            return;
+        }
+        if (bitmap != null) {
+            acquire(bitmap);
+            imageView.setImageBitmap(bitmap);
+        } else {
+            imageView.setImageResource(PLACEHOLDER);
+        }
+        imageView.setTag(R.id.tag_avatar_bitmap, bitmap);
+        if (shown instanceof Bitmap) {
+            release((Bitmap) shown);
+        }
+    }
+
+    private synchronized void acquire(Bitmap bitmap) {
+        refCounts.merge(bitmap, 1, Integer::sum);
+    }
+
+    private synchronized void release(Bitmap bitmap) {
+        Integer count = refCounts.get(bitmap);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            refCounts.put(bitmap, count - 1);
+        } else {
+            refCounts.remove(bitmap);
+            pool.put(bitmap);
+        }
+    }
+}
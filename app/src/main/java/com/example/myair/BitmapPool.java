@@ -0,0 +1,148 @@
+package com.example.myair;
+
+import android.graphics.Bitmap;
+import android.util.SparseArray;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Bitmaps nothing displays any more, kept so their pixel memory can be
+ * decoded into again through BitmapFactory.Options.inBitmap instead of
+ * allocating a new Bitmap for every avatar.
+ *
+ * Bitmaps are grouped in power-of-two size classes by allocation size. A
+ * request looks in its own class for a bitmap that is large enough, then in
+ * the class above, where every bitmap is; so a reused bitmap wastes at most
+ * three quarters of its memory. Only mutable bitmaps can be reused, others
+ * are ignored. Callers must only put bitmaps that are no longer drawn.
+ */
+public class BitmapPool {
+    private final long maxBytes;
+    // Size class (floor of log2 of the allocation size) to bitmaps, oldest first
+    private final SparseArray<ArrayDeque<Bitmap>> classes = new SparseArray<>();
+    private long pooledBytes;
+
+    private long hits;
+    private long misses;
+    private long dropped;
+
+    /**
+     * @param maxBytes Total allocation size of the pooled bitmaps, further bitmaps are dropped
+     */
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * A pooled bitmap reconfigured to the size and config, or null if none is
+     * large enough, in which case the caller allocates a new one. The pixels
+     * are left over from its previous use.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        int needed = width * height * bytesPerPixel(config);
+        int sizeClass = sizeClass(needed);
+        Bitmap bitmap = take(sizeClass, needed);
+        if (bitmap == null) {
+            bitmap = take(sizeClass + 1, needed);
+        }
+        if (bitmap == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        bitmap.reconfigure(width, height, config);
+        return bitmap;
+    }
+
+    /**
+     * Offer a bitmap for reuse. Ignored if it is immutable or recycled, and
+     * dropped if the pool is full.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        int bytes = bitmap.getAllocationByteCount();
+        if (pooledBytes + bytes > maxBytes) {
+            dropped++;
+            return;
+        }
+        int sizeClass = sizeClass(bytes);
+        ArrayDeque<Bitmap> bitmaps = classes.get(sizeClass);
+        if (bitmaps == null) {
+            bitmaps = new ArrayDeque<>();
+            classes.put(sizeClass, bitmaps);
+        }
+        bitmaps.addLast(bitmap);
+        pooledBytes += bytes;
+    }
+
+    // Requests served from the pool
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    // Requests the pool could not serve, each one a new Bitmap allocation
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    // Bitmaps turned away because the pool was full
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    // Whether the bitmap is waiting in the pool, for tests
+    synchronized boolean contains(Bitmap bitmap) {
+        ArrayDeque<Bitmap> bitmaps = classes.get(sizeClass(bitmap.getAllocationByteCount()));
+        return bitmaps != null && bitmaps.contains(bitmap);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "hits=%d misses=%d hitRate=%.2f dropped=%d pooled=%dKB",
+                hits, misses, getHitRate(), dropped, pooledBytes / 1024);
+    }
+
+    // Oldest bitmap of the class with at least the needed allocation size
+    private Bitmap take(int sizeClass, int needed) {
+        ArrayDeque<Bitmap> bitmaps = classes.get(sizeClass);
+        if (bitmaps == null) {
+            return null;
+        }
+        for (Bitmap bitmap : bitmaps) {
+            if (bitmap.getAllocationByteCount() >= needed) {
+                bitmaps.remove(bitmap);
+                pooledBytes -= bitmap.getAllocationByteCount();
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    static int sizeClass(int bytes) {
+        return 31 - Integer.numberOfLeadingZeros(Math.max(bytes, 1));
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+}
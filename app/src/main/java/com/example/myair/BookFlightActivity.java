@@ -27,7 +27,7 @@ public class BookFlightActivity extends AppCompatActivity {
     private Button btnSelectBookingDate, btnSaveBooking;
     private ImageView backButton;
 
-    private DatabaseHelper dbHelper;
+    private PassengerRepository repository;
     private int passengerId;
     private String selectedDate = "";
 
@@ -37,7 +37,7 @@ public class BookFlightActivity extends AppCompatActivity {
         setContentView(R.layout.activity_book_flight);
 
         initViews();
-        dbHelper = new DatabaseHelper(this);
+        repository = PassengerRepository.getInstance(this);
 
         // Get passenger info from intent
         passengerId = getIntent().getIntExtra("PASSENGER_ID", -1);
@@ -146,32 +146,32 @@ public class BookFlightActivity extends AppCompatActivity {
         String seatNumber = etSeatNumber.getText().toString().trim();
         String status = spinnerStatus.getSelectedItem().toString();
 
-        // Save to local SQLite first (immediate)
-        long result = dbHelper.addBooking(passengerId, flightNumber, selectedDate, seatNumber, status);
-
-        if (result > 0) {
-            // Sync with server (async)
-            NetworkService.getInstance(this).createBooking(
-                passengerId, 
-                flightNumber, 
-                selectedDate, 
-                seatNumber, 
-                status,
-                new NetworkService.NetworkCallback<org.json.JSONObject>() {
-                    @Override
-                    public void onSuccess(org.json.JSONObject response) {
-                        Toast.makeText(BookFlightActivity.this, R.string.msg_booking_saved, Toast.LENGTH_SHORT).show();
-                        finish(); // Return to PassengerDetailsActivity
-                    }
-                    
-                    @Override
-                    public void onError(String error) {
-                        Toast.makeText(BookFlightActivity.this, "Saved locally. Server sync failed: " + error, Toast.LENGTH_LONG).show();
-                        finish(); // Still return, data is saved locally
-                    }
-                });
-        } else {
-            Toast.makeText(this, "Failed to save booking", Toast.LENGTH_SHORT).show();
-        }
+        // A second tap while the save runs would book twice
+        btnSaveBooking.setEnabled(false);
+
+        // Save to local SQLite first (off the main thread)
+        repository.addBooking(passengerId, flightNumber, selectedDate, seatNumber, status,
+                new PassengerRepository.Callback<Long>() {
+            @Override
+            public void onResult(Long result) {
+                if (result > 0) {
+                    // Saved locally, OutboxReplicator sends it to the server
+                    Toast.makeText(BookFlightActivity.this, R.string.msg_booking_saved, Toast.LENGTH_SHORT).show();
+                    finish(); // Return to PassengerDetailsActivity
+                } else {
+                    saveFailed();
+                }
+            }
+
+            @Override
+            public void onError(Exception error) {
+                saveFailed();
+            }
+        });
+    }
+
+    private void saveFailed() {
+        btnSaveBooking.setEnabled(true);
+        Toast.makeText(this, "Failed to save booking", Toast.LENGTH_SHORT).show();
     }
 }
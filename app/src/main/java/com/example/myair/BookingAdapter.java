@@ -7,18 +7,38 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
+import java.util.Objects;
 
-public class BookingAdapter extends RecyclerView.Adapter<BookingAdapter.BookingViewHolder> {
+public class BookingAdapter extends ListAdapter<FlightBooking, BookingAdapter.BookingViewHolder> {
+
+    // Bookings are the same row when their ids match, and need a rebind only
+    // when something shown in the row changed
+    private static final DiffUtil.ItemCallback<FlightBooking> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<FlightBooking>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull FlightBooking oldItem, @NonNull FlightBooking newItem) {
+                    return oldItem.getId() == newItem.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull FlightBooking oldItem, @NonNull FlightBooking newItem) {
+                    return Objects.equals(oldItem.getFlightNumber(), newItem.getFlightNumber())
+                            && Objects.equals(oldItem.getBookingDate(), newItem.getBookingDate())
+                            && Objects.equals(oldItem.getSeatNumber(), newItem.getSeatNumber())
+                            && Objects.equals(oldItem.getStatus(), newItem.getStatus());
+                }
+            };
 
     private Context context;
-    private List<FlightBooking> bookingList;
 
-    public BookingAdapter(Context context, List<FlightBooking> bookingList) {
+    public BookingAdapter(Context context) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.bookingList = bookingList;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -30,7 +50,7 @@ public class BookingAdapter extends RecyclerView.Adapter<BookingAdapter.BookingV
 
     @Override
     public void onBindViewHolder(@NonNull BookingViewHolder holder, int position) {
-        FlightBooking booking = bookingList.get(position);
+        FlightBooking booking = getItem(position);
 
         holder.tvFlightNumber.setText(booking.getFlightNumber());
         holder.tvBookingDate.setText("Booked: " + booking.getBookingDate());
@@ -50,13 +70,8 @@ public class BookingAdapter extends RecyclerView.Adapter<BookingAdapter.BookingV
     }
 
     @Override
-    public int getItemCount() {
-        return bookingList.size();
-    }
-
-    public void updateList(List<FlightBooking> newList) {
-        this.bookingList = newList;
-        notifyDataSetChanged();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     static class BookingViewHolder extends RecyclerView.ViewHolder {
@@ -0,0 +1,89 @@
+package com.example.myair;
+
+import android.util.LruCache;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * GET for list endpoints that answer { "data": [...] } with a strong ETag.
+ * The last list of each URL is kept in memory with its ETag, which is sent
+ * back as If-None-Match. When the server answers 304 the kept list is
+ * delivered again, with no body to download and no JSON to parse.
+ */
+public class ConditionalListRequest extends Request<JSONArray> {
+    private static final int MAX_CACHED_LISTS = 16;
+    private static final LruCache<String, CachedList> CACHE = new LruCache<>(MAX_CACHED_LISTS);
+
+    private final Response.Listener<JSONArray> listener;
+    // Read once, so the ETag sent and the list a 304 refers to always match
+    private final CachedList cached;
+
+    public ConditionalListRequest(String url, Response.Listener<JSONArray> listener,
+                                  Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        this.listener = listener;
+        this.cached = CACHE.get(url);
+        // The in-memory copy does the caching, Volley's disk cache would only duplicate it
+        setShouldCache(false);
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        if (cached != null) {
+            headers.put("If-None-Match", cached.etag);
+        }
+        return headers;
+    }
+
+    @Override
+    protected Response<JSONArray> parseNetworkResponse(NetworkResponse response) {
+        if (response.statusCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+            return Response.success(cached.data, null);
+        }
+        try {
+            String json = new String(response.data, HttpHeaderParser.parseCharset(response.headers, "UTF-8"));
+            JSONArray data = new JSONObject(json).optJSONArray("data");
+            if (data == null) {
+                data = new JSONArray();
+            }
+            String etag = response.headers != null ? response.headers.get("ETag") : null;
+            if (etag != null) {
+                CACHE.put(getUrl(), new CachedList(etag, data));
+            } else {
+                CACHE.remove(getUrl());
+            }
+            return Response.success(data, null);
+        } catch (UnsupportedEncodingException | JSONException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    @Override
+    protected void deliverResponse(JSONArray response) {
+        listener.onResponse(response);
+    }
+
+    private static class CachedList {
+        final String etag;
+        final JSONArray data;
+
+        CachedList(String etag, JSONArray data) {
+            this.etag = etag;
+            this.data = data;
+        }
+    }
+}
@@ -3,21 +3,55 @@ package com.example.myair;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
+    private static final String TAG = "DatabaseHelper";
 
     // Database Info
     private static final String DATABASE_NAME = "passenger_database.db";
-    private static final int DATABASE_VERSION = 10;
+    private static final int DATABASE_VERSION = 18;
+    // Oldest version onUpgrade can migrate without dropping data
+    private static final int MIN_MIGRATABLE_VERSION = 10;
+
+    // getPassengersPage cursor for the newest page
+    public static final int FIRST_PAGE = Integer.MAX_VALUE;
 
     // Table Names
     private static final String TABLE_PASSENGERS = "passenger_accounts";
     private static final String TABLE_BOOKINGS = "flight_bookings";
+    private static final String TABLE_SYNC_STATE = "sync_state";
+    private static final String TABLE_PASSENGER_SEARCH = "passenger_search"; // FTS4 index of passengers
+    private static final String TABLE_OUTBOX = "outbox"; // Local writes not yet on the server
+    private static final String TABLE_PASSENGER_ALIASES = "passenger_id_aliases"; // Remapped local ids
+
+    // Index Names
+    private static final String INDEX_BOOKINGS_PASSENGER_DATE = "idx_bookings_passenger_date";
+
+    // Trigger Names
+    private static final String TRIGGER_BOOKING_INSERTED = "trg_booking_count_insert";
+    private static final String TRIGGER_BOOKING_DELETED = "trg_booking_count_delete";
+    private static final String TRIGGER_BOOKING_MOVED = "trg_booking_count_update";
+    private static final String TRIGGER_PASSENGER_INSERTED = "trg_booking_count_passenger_insert";
+    private static final String TRIGGER_PASSENGER_ID_CHANGED = "trg_booking_count_passenger_id";
+    private static final String TRIGGER_SEARCH_INSERTED = "trg_passenger_search_insert";
+    private static final String TRIGGER_SEARCH_BEFORE_UPDATE = "trg_passenger_search_before_update";
+    private static final String TRIGGER_SEARCH_AFTER_UPDATE = "trg_passenger_search_after_update";
+    private static final String TRIGGER_SEARCH_DELETED = "trg_passenger_search_delete";
 
     // Passenger Table Columns
     private static final String KEY_ID = "id";
@@ -27,7 +61,21 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String KEY_DATE_OF_BIRTH = "date_of_birth";
     private static final String KEY_MEMBERSHIP_LEVEL = "membership_level";
     private static final String KEY_IS_ACTIVE = "is_active";
-    private static final String KEY_PROFILE_IMAGE = "profile_image";
+    private static final String KEY_PROFILE_IMAGE = "profile_image"; // ImageStore hash
+    private static final String KEY_BOOKING_COUNT = "booking_count"; // Maintained by triggers
+    private static final String KEY_PROFILE_THUMBNAIL = "profile_thumbnail"; // ImageStore hash
+
+    // Columns of passenger_search, in SEARCH_WEIGHTS order
+    private static final String SEARCH_COLUMNS = KEY_FULL_NAME + ", " + KEY_EMAIL + ", " + KEY_PHONE;
+    // Name hits rank above email hits, which rank above phone hits
+    private static final double[] SEARCH_WEIGHTS = {3.0, 2.0, 1.0};
+    // Matches ranked per search, the best of these are returned
+    private static final int SEARCH_CANDIDATES = 500;
+
+    // Columns of a passenger list row, see listRowFromCursor
+    private static final String LIST_ROW_COLUMNS = KEY_ID + ", " + KEY_FULL_NAME + ", " + KEY_EMAIL + ", "
+            + KEY_MEMBERSHIP_LEVEL + ", " + KEY_PROFILE_IMAGE + ", " + KEY_BOOKING_COUNT + ", "
+            + KEY_PROFILE_THUMBNAIL;
 
     // Booking Table Columns
     private static final String KEY_BOOKING_ID = "id";
@@ -37,8 +85,84 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String KEY_SEAT_NUMBER = "seat_number";
     private static final String KEY_STATUS = "status";
 
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // Sync State Table Columns
+    private static final String KEY_SYNC_KEY = "key";
+    private static final String KEY_SYNC_VALUE = "value";
+
+    // Outbox Table Columns
+    private static final String KEY_OUTBOX_ID = "id";
+    private static final String KEY_OUTBOX_ENTITY = "entity";
+    private static final String KEY_OUTBOX_ENTITY_ID = "entity_id";
+    private static final String KEY_OUTBOX_OP = "op";
+    private static final String KEY_OUTBOX_REVISION = "revision";
+    private static final String KEY_OUTBOX_IN_FLIGHT = "in_flight";
+    private static final String KEY_OUTBOX_ATTEMPTS = "attempts";
+    private static final String KEY_OUTBOX_NEXT_ATTEMPT_AT = "next_attempt_at"; // Wall clock millis
+    private static final String KEY_OUTBOX_LAST_ERROR = "last_error";
+
+    // Passenger Alias Table Columns
+    private static final String KEY_ALIAS_LOCAL_ID = "local_id";
+    private static final String KEY_ALIAS_SERVER_ID = "server_id";
+
+    // Sync State Keys
+    private static final String SYNC_KEY_PASSENGERS = "passengers_sync_token";
+    private static final String SYNC_KEY_PASSENGERS_ETAG = "passengers_etag";
+
+    // Both statements are bound by bindPassenger: ?7 is the full image, ?8 the
+    // thumbnail, ?9 whether the server has a full image and ?10 the id
+    private static final String SQL_INSERT_PASSENGER = "INSERT INTO " + TABLE_PASSENGERS + " ("
+            + KEY_FULL_NAME + ", " + KEY_EMAIL + ", " + KEY_PHONE + ", " + KEY_DATE_OF_BIRTH + ", "
+            + KEY_MEMBERSHIP_LEVEL + ", " + KEY_IS_ACTIVE + ", " + KEY_PROFILE_IMAGE + ", "
+            + KEY_PROFILE_THUMBNAIL + ", " + KEY_ID
+            + ") VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?7, ?8, ?10)";
+    // List rows only carry the thumbnail. A full image fetched earlier is kept
+    // while the server still has one with the same thumbnail, otherwise it is
+    // dropped and fetched again when the details screen needs it.
+    private static final String SQL_UPDATE_PASSENGER = "UPDATE " + TABLE_PASSENGERS + " SET "
+            + KEY_FULL_NAME + " = ?1, " + KEY_EMAIL + " = ?2, " + KEY_PHONE + " = ?3, "
+            + KEY_DATE_OF_BIRTH + " = ?4, " + KEY_MEMBERSHIP_LEVEL + " = ?5, "
+            + KEY_IS_ACTIVE + " = ?6, "
+            + KEY_PROFILE_IMAGE + " = COALESCE(?7, CASE WHEN ?9 AND " + KEY_PROFILE_THUMBNAIL
+            + " IS ?8 THEN " + KEY_PROFILE_IMAGE + " END), "
+            + KEY_PROFILE_THUMBNAIL + " = ?8 WHERE " + KEY_ID + " = ?10";
+    private static final int DELETE_CHUNK_SIZE = 500;
+
+    // Legacy Base64 images are read in slices to stay under the CursorWindow limit
+    private static final int IMAGE_MIGRATION_SLICE = 512 * 1024;
+
+    private static DatabaseHelper instance;
+
+    private final ImageStore imageStore;
+
+    /**
+     * Get the process-wide helper. The underlying SQLite connection is opened
+     * once and kept for the lifetime of the process instead of being torn down
+     * after every call; see {@link #closeInstance()}.
+     */
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext(), DATABASE_NAME);
+        }
+        return instance;
+    }
+
+    /**
+     * Close the shared connection. Only called by {@link MyAirApplication}
+     * when the process is shutting down.
+     */
+    public static synchronized void closeInstance() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    // Package-private so tests and benchmarks can use a separate database file
+    DatabaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        imageStore = ImageStore.getInstance(context);
+        // WAL lets readers run alongside the single long-lived writer connection
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
@@ -52,7 +176,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 + KEY_DATE_OF_BIRTH + " TEXT,"
                 + KEY_MEMBERSHIP_LEVEL + " TEXT,"
                 + KEY_IS_ACTIVE + " INTEGER DEFAULT 1,"
-                + KEY_PROFILE_IMAGE + " TEXT"
+                + KEY_PROFILE_IMAGE + " TEXT,"
+                + KEY_BOOKING_COUNT + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_PROFILE_THUMBNAIL + " TEXT"
                 + ")";
         db.execSQL(CREATE_PASSENGERS_TABLE);
 
@@ -68,13 +194,290 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 + TABLE_PASSENGERS + "(" + KEY_ID + ") ON DELETE CASCADE"
                 + ")";
         db.execSQL(CREATE_BOOKINGS_TABLE);
+        createBookingIndexes(db);
+        createBookingCountTriggers(db);
+
+        createSyncStateTable(db);
+        createPassengerSearch(db);
+        createOutboxTable(db);
+        createPassengerAliasTable(db);
     }
 
+    /**
+     * Upgrade step by step from the installed version, keeping all data.
+     * SQLiteOpenHelper runs this inside a transaction, so a failed step leaves
+     * the old database untouched. Fresh installs get the same schema from
+     * onCreate, so every schema change needs both an onCreate change and a
+     * new step in migrateTo.
+     */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_BOOKINGS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_PASSENGERS);
-        onCreate(db);
+        if (oldVersion < MIN_MIGRATABLE_VERSION) {
+            // Schemas before version 10 were never migrated in place, rebuild them
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNC_STATE);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_BOOKINGS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_PASSENGERS);
+            onCreate(db);
+            return;
+        }
+
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            Log.d(TAG, "Migrating database to version " + version);
+            migrateTo(db, version);
+        }
+    }
+
+    // Applies the changes from version - 1 to version
+    private void migrateTo(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 11:
+                // Delta sync watermarks
+                createSyncStateTable(db);
+                break;
+            case 12:
+                // Profile images move from Base64 TEXT into ImageStore
+                moveProfileImagesToStore(db);
+                break;
+            case 13:
+                // Bookings looked up by passenger and sorted by date
+                createBookingIndexes(db);
+                break;
+            case 14:
+                // Per-passenger booking counts kept up to date by triggers
+                db.execSQL("ALTER TABLE " + TABLE_PASSENGERS + " ADD COLUMN "
+                        + KEY_BOOKING_COUNT + " INTEGER NOT NULL DEFAULT 0");
+                db.execSQL("UPDATE " + TABLE_PASSENGERS + " SET " + KEY_BOOKING_COUNT + " = "
+                        + bookingCountOf(TABLE_PASSENGERS + "." + KEY_ID));
+                createBookingCountTriggers(db);
+                break;
+            case 15:
+                // Full-text search over name, email and phone
+                createPassengerSearch(db);
+                db.execSQL("INSERT INTO " + TABLE_PASSENGER_SEARCH + "(" + TABLE_PASSENGER_SEARCH
+                        + ") VALUES ('rebuild')");
+                break;
+            case 16:
+                // Durable queue of local writes for OutboxReplicator
+                createOutboxTable(db);
+                break;
+            case 17:
+                // Avatar-sized copies of profile images, as served in list rows
+                db.execSQL("ALTER TABLE " + TABLE_PASSENGERS + " ADD COLUMN "
+                        + KEY_PROFILE_THUMBNAIL + " TEXT");
+                break;
+            case 18:
+                // Local passenger ids stay valid after a create moves to its server id
+                createPassengerAliasTable(db);
+                break;
+            default:
+                throw new IllegalStateException("No migration to database version " + version);
+        }
+    }
+
+    private void createBookingIndexes(SQLiteDatabase db) {
+        // Serves both the passenger_id filter and the booking_date sort, so
+        // per-passenger lookups need neither a table scan nor a temp sort
+        db.execSQL("CREATE INDEX " + INDEX_BOOKINGS_PASSENGER_DATE + " ON " + TABLE_BOOKINGS
+                + "(" + KEY_PASSENGER_ID + ", " + KEY_BOOKING_DATE + ")");
+    }
+
+    private void createBookingCountTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER " + TRIGGER_BOOKING_INSERTED + " AFTER INSERT ON " + TABLE_BOOKINGS
+                + " BEGIN " + adjustBookingCount("NEW", "+ 1") + " END");
+        db.execSQL("CREATE TRIGGER " + TRIGGER_BOOKING_DELETED + " AFTER DELETE ON " + TABLE_BOOKINGS
+                + " BEGIN " + adjustBookingCount("OLD", "- 1") + " END");
+        db.execSQL("CREATE TRIGGER " + TRIGGER_BOOKING_MOVED + " AFTER UPDATE OF " + KEY_PASSENGER_ID
+                + " ON " + TABLE_BOOKINGS
+                + " WHEN OLD." + KEY_PASSENGER_ID + " <> NEW." + KEY_PASSENGER_ID
+                + " BEGIN " + adjustBookingCount("OLD", "- 1") + " "
+                + adjustBookingCount("NEW", "+ 1") + " END");
+
+        // Passengers can be (re)inserted or remapped while bookings already point at them
+        db.execSQL("CREATE TRIGGER " + TRIGGER_PASSENGER_INSERTED + " AFTER INSERT ON " + TABLE_PASSENGERS
+                + " BEGIN " + recountBookings() + " END");
+        db.execSQL("CREATE TRIGGER " + TRIGGER_PASSENGER_ID_CHANGED + " AFTER UPDATE OF " + KEY_ID
+                + " ON " + TABLE_PASSENGERS + " BEGIN " + recountBookings() + " END");
+    }
+
+    private static String adjustBookingCount(String row, String delta) {
+        return "UPDATE " + TABLE_PASSENGERS + " SET " + KEY_BOOKING_COUNT + " = " + KEY_BOOKING_COUNT
+                + " " + delta + " WHERE " + KEY_ID + " = " + row + "." + KEY_PASSENGER_ID + ";";
+    }
+
+    private static String recountBookings() {
+        return "UPDATE " + TABLE_PASSENGERS + " SET " + KEY_BOOKING_COUNT + " = " + bookingCountOf("NEW." + KEY_ID)
+                + " WHERE " + KEY_ID + " = NEW." + KEY_ID + ";";
+    }
+
+    private static String bookingCountOf(String passengerId) {
+        return "(SELECT COUNT(*) FROM " + TABLE_BOOKINGS
+                + " WHERE " + KEY_PASSENGER_ID + " = " + passengerId + ")";
+    }
+
+    private void createPassengerSearch(SQLiteDatabase db) {
+        // External content table: the index reads text from passenger_accounts
+        // instead of keeping a second copy, prefix indexes serve "ad*" lookups.
+        // FTS5 is not built into the platform SQLite, FTS4 is.
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_PASSENGER_SEARCH + " USING fts4("
+                + "content=\"" + TABLE_PASSENGERS + "\", "
+                + SEARCH_COLUMNS + ", "
+                + "prefix=\"2,3\", tokenize=unicode61)");
+
+        // Only reindex when searchable text or the id changes, not on booking count updates
+        String textChanged = " WHEN OLD." + KEY_ID + " IS NOT NEW." + KEY_ID
+                + " OR OLD." + KEY_FULL_NAME + " IS NOT NEW." + KEY_FULL_NAME
+                + " OR OLD." + KEY_EMAIL + " IS NOT NEW." + KEY_EMAIL
+                + " OR OLD." + KEY_PHONE + " IS NOT NEW." + KEY_PHONE;
+        String updateOf = " UPDATE OF " + KEY_ID + ", " + SEARCH_COLUMNS + " ON " + TABLE_PASSENGERS;
+
+        db.execSQL("CREATE TRIGGER " + TRIGGER_SEARCH_INSERTED + " AFTER INSERT ON " + TABLE_PASSENGERS
+                + " BEGIN " + indexPassenger() + " END");
+        db.execSQL("CREATE TRIGGER " + TRIGGER_SEARCH_BEFORE_UPDATE + " BEFORE" + updateOf + textChanged
+                + " BEGIN " + unindexPassenger() + " END");
+        db.execSQL("CREATE TRIGGER " + TRIGGER_SEARCH_AFTER_UPDATE + " AFTER" + updateOf + textChanged
+                + " BEGIN " + indexPassenger() + " END");
+        db.execSQL("CREATE TRIGGER " + TRIGGER_SEARCH_DELETED + " BEFORE DELETE ON " + TABLE_PASSENGERS
+                + " BEGIN " + unindexPassenger() + " END");
+    }
+
+    private static String indexPassenger() {
+        return "INSERT INTO " + TABLE_PASSENGER_SEARCH + "(docid, " + SEARCH_COLUMNS + ") VALUES (NEW."
+                + KEY_ID + ", NEW." + KEY_FULL_NAME + ", NEW." + KEY_EMAIL + ", NEW." + KEY_PHONE + ");";
+    }
+
+    // Runs before the row changes, FTS4 reads the old text to find what to remove
+    private static String unindexPassenger() {
+        return "DELETE FROM " + TABLE_PASSENGER_SEARCH + " WHERE docid = OLD." + KEY_ID + ";";
+    }
+
+    private void createSyncStateTable(SQLiteDatabase db) {
+        // Create Sync State Table (delta sync watermarks)
+        String CREATE_SYNC_STATE_TABLE = "CREATE TABLE " + TABLE_SYNC_STATE + "("
+                + KEY_SYNC_KEY + " TEXT PRIMARY KEY,"
+                + KEY_SYNC_VALUE + " TEXT"
+                + ")";
+        db.execSQL(CREATE_SYNC_STATE_TABLE);
+    }
+
+    private void createOutboxTable(SQLiteDatabase db) {
+        // One entry per row, so repeated edits to a row coalesce
+        String CREATE_OUTBOX_TABLE = "CREATE TABLE " + TABLE_OUTBOX + "("
+                + KEY_OUTBOX_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + KEY_OUTBOX_ENTITY + " TEXT NOT NULL,"
+                + KEY_OUTBOX_ENTITY_ID + " INTEGER NOT NULL,"
+                + KEY_OUTBOX_OP + " TEXT NOT NULL,"
+                + KEY_OUTBOX_REVISION + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_OUTBOX_IN_FLIGHT + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_OUTBOX_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_OUTBOX_NEXT_ATTEMPT_AT + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_OUTBOX_LAST_ERROR + " TEXT,"
+                + "UNIQUE(" + KEY_OUTBOX_ENTITY + ", " + KEY_OUTBOX_ENTITY_ID + ")"
+                + ")";
+        db.execSQL(CREATE_OUTBOX_TABLE);
+    }
+
+    private void createPassengerAliasTable(SQLiteDatabase db) {
+        String CREATE_PASSENGER_ALIASES_TABLE = "CREATE TABLE " + TABLE_PASSENGER_ALIASES + "("
+                + KEY_ALIAS_LOCAL_ID + " INTEGER PRIMARY KEY,"
+                + KEY_ALIAS_SERVER_ID + " INTEGER NOT NULL"
+                + ")";
+        db.execSQL(CREATE_PASSENGER_ALIASES_TABLE);
+    }
+
+    private void moveProfileImagesToStore(SQLiteDatabase db) {
+        List<Integer> ids = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT " + KEY_ID + " FROM " + TABLE_PASSENGERS
+                + " WHERE " + KEY_PROFILE_IMAGE + " IS NOT NULL", null);
+        while (cursor.moveToNext()) {
+            ids.add(cursor.getInt(0));
+        }
+        cursor.close();
+
+        for (Integer id : ids) {
+            String[] idArg = new String[]{String.valueOf(id)};
+            cursor = db.rawQuery("SELECT length(" + KEY_PROFILE_IMAGE + ") FROM " + TABLE_PASSENGERS
+                    + " WHERE " + KEY_ID + " = ?", idArg);
+            int length = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+            cursor.close();
+
+            StringBuilder base64 = new StringBuilder(length);
+            for (int start = 1; start <= length; start += IMAGE_MIGRATION_SLICE) {
+                cursor = db.rawQuery("SELECT substr(" + KEY_PROFILE_IMAGE + ", " + start + ", "
+                        + IMAGE_MIGRATION_SLICE + ") FROM " + TABLE_PASSENGERS
+                        + " WHERE " + KEY_ID + " = ?", idArg);
+                if (cursor.moveToFirst()) {
+                    base64.append(cursor.getString(0));
+                }
+                cursor.close();
+            }
+
+            // Decoded from the builder as it is written, without another copy of the text
+            String hash = imageStore.putBase64(base64);
+            if (hash == null) {
+                Log.w(TAG, "Dropping unreadable profile image of passenger " + id);
+            }
+            ContentValues values = new ContentValues();
+            values.put(KEY_PROFILE_IMAGE, hash);
+            db.update(TABLE_PASSENGERS, values, KEY_ID + " = ?", idArg);
+        }
+    }
+
+    // Writes the passenger's image to ImageStore and returns the hash to keep in the row
+    private String storeProfileImage(Passenger passenger) {
+        return storeImage(passenger.getProfileImagePath(), passenger.getProfileImageHash(), passenger);
+    }
+
+    private String storeThumbnail(Passenger passenger) {
+        return storeImage(passenger.getThumbnail(), passenger.getThumbnailHash(), passenger);
+    }
+
+    private String storeImage(String base64Image, String storedHash, Passenger passenger) {
+        if (base64Image != null && !base64Image.isEmpty()) {
+            String hash = imageStore.putBase64(base64Image);
+            if (hash == null) {
+                Log.w(TAG, "Ignoring invalid image of passenger " + passenger.getId());
+            }
+            return hash;
+        }
+        return storedHash;
+    }
+
+    // Reads a row projected as id, full_name, email, phone, date_of_birth,
+    // membership_level, is_active, profile_image, booking_count, profile_thumbnail
+    private Passenger passengerFromCursor(Cursor cursor) {
+        Passenger passenger = new Passenger(
+                cursor.getInt(0),
+                cursor.getString(1),
+                cursor.getString(2),
+                cursor.getString(3),
+                cursor.getString(4),
+                cursor.getString(5),
+                cursor.getInt(6) == 1,
+                null
+        );
+        passenger.setProfileImageHash(cursor.getString(7));
+        passenger.setBookingCount(cursor.getInt(8));
+        passenger.setThumbnailHash(cursor.getString(9));
+        return passenger;
+    }
+
+    // Reads a row projected with LIST_ROW_COLUMNS. Phone, date of birth and
+    // status are left unset, load the passenger by id to edit or show them
+    private Passenger listRowFromCursor(Cursor cursor) {
+        Passenger passenger = new Passenger(
+                cursor.getInt(0),
+                cursor.getString(1),
+                cursor.getString(2),
+                null,
+                null,
+                cursor.getString(3),
+                true,
+                null
+        );
+        passenger.setProfileImageHash(cursor.getString(4));
+        passenger.setBookingCount(cursor.getInt(5));
+        passenger.setThumbnailHash(cursor.getString(6));
+        return passenger;
     }
 
     // Add a new passenger
@@ -88,11 +491,20 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(KEY_DATE_OF_BIRTH, passenger.getDateOfBirth());
         values.put(KEY_MEMBERSHIP_LEVEL, passenger.getMembershipLevel());
         values.put(KEY_IS_ACTIVE, passenger.isActive() ? 1 : 0);
-        values.put(KEY_PROFILE_IMAGE, passenger.getProfileImagePath());
+        values.put(KEY_PROFILE_IMAGE, storeProfileImage(passenger));
+        values.put(KEY_PROFILE_THUMBNAIL, storeThumbnail(passenger));
 
-        long id = db.insert(TABLE_PASSENGERS, null, values);
-        db.close();
-        return id;
+        db.beginTransaction();
+        try {
+            long id = db.insert(TABLE_PASSENGERS, null, values);
+            if (id != -1) {
+                enqueueMutation(db, OutboxEntry.ENTITY_PASSENGER, id, OutboxEntry.OP_CREATE);
+            }
+            db.setTransactionSuccessful();
+            return id;
+        } finally {
+            db.endTransaction();
+        }
     }
 
     // Add a new passenger with specific ID (for server sync)
@@ -108,10 +520,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(KEY_DATE_OF_BIRTH, passenger.getDateOfBirth());
         values.put(KEY_MEMBERSHIP_LEVEL, passenger.getMembershipLevel());
         values.put(KEY_IS_ACTIVE, passenger.isActive() ? 1 : 0);
-        values.put(KEY_PROFILE_IMAGE, passenger.getProfileImagePath());
+        values.put(KEY_PROFILE_IMAGE, storeProfileImage(passenger));
+        values.put(KEY_PROFILE_THUMBNAIL, storeThumbnail(passenger));
 
         long id = db.insert(TABLE_PASSENGERS, null, values);
-        db.close();
         return id;
     }
 
@@ -121,58 +533,131 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         
         Cursor cursor = db.query(TABLE_PASSENGERS,
                 new String[]{KEY_ID, KEY_FULL_NAME, KEY_EMAIL, KEY_PHONE,
-                        KEY_DATE_OF_BIRTH, KEY_MEMBERSHIP_LEVEL, KEY_IS_ACTIVE, KEY_PROFILE_IMAGE},
+                        KEY_DATE_OF_BIRTH, KEY_MEMBERSHIP_LEVEL, KEY_IS_ACTIVE, KEY_PROFILE_IMAGE,
+                        KEY_BOOKING_COUNT, KEY_PROFILE_THUMBNAIL},
                 KEY_ID + "=?",
-                new String[]{String.valueOf(id)},
+                new String[]{String.valueOf(resolvePassengerId(db, id))},
                 null, null, null, null);
 
         Passenger passenger = null;
         if (cursor != null && cursor.moveToFirst()) {
-            passenger = new Passenger(
-                    cursor.getInt(0),
-                    cursor.getString(1),
-                    cursor.getString(2),
-                    cursor.getString(3),
-                    cursor.getString(4),
-                    cursor.getString(5),
-                    cursor.getInt(6) == 1,
-                    cursor.getString(7)
-            );
+            passenger = passengerFromCursor(cursor);
             cursor.close();
         }
-        
-        db.close();
         return passenger;
     }
 
-    // Get all passengers
-    public List<Passenger> getAllPassengers() {
-        List<Passenger> passengerList = new ArrayList<>();
-        // Order by ID (latest created first)
-        String selectQuery = "SELECT * FROM " + TABLE_PASSENGERS + " ORDER BY " + KEY_ID + " DESC";
-
+    /**
+     * One page of passenger list rows, newest first. Rows only carry what
+     * PassengerAdapter renders; use {@link #getPassenger(int)} for the rest.
+     * Keyset pagination: the page starts after the last id already shown
+     * instead of at an OFFSET, so every page is a bounded primary-key range
+     * scan however deep the list is scrolled.
+     *
+     * @param beforeId id of the last passenger on the previous page, or
+     *                 {@link #FIRST_PAGE} for the newest rows
+     */
+    public List<Passenger> getPassengersPage(int beforeId, int limit) {
+        List<Passenger> page = new ArrayList<>(limit);
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery(selectQuery, null);
+        Cursor cursor = db.rawQuery("SELECT " + LIST_ROW_COLUMNS + " FROM " + TABLE_PASSENGERS
+                        + " WHERE " + KEY_ID + " < ? ORDER BY " + KEY_ID + " DESC LIMIT ?",
+                new String[]{String.valueOf(beforeId), String.valueOf(limit)});
 
-        if (cursor.moveToFirst()) {
-            do {
-                Passenger passenger = new Passenger(
-                        cursor.getInt(0),
-                        cursor.getString(1),
-                        cursor.getString(2),
-                        cursor.getString(3),
-                        cursor.getString(4),
-                        cursor.getString(5),
-                        cursor.getInt(6) == 1,
-                        cursor.getString(7)
-                );
-                passengerList.add(passenger);
-            } while (cursor.moveToNext());
+        while (cursor.moveToNext()) {
+            page.add(listRowFromCursor(cursor));
+        }
+
+        cursor.close();
+        return page;
+    }
+
+    /**
+     * Passenger list rows whose name, email or phone has a word starting
+     * with each word of the query, best matches first. "ada love" finds
+     * "Ada Lovelace". Returns an empty list when the query has no words.
+     */
+    public List<Passenger> searchPassengers(String query, int limit) {
+        List<Passenger> results = new ArrayList<>();
+        String match = toPrefixQuery(query);
+        if (match.isEmpty()) {
+            return results;
         }
 
+        List<Double> scores = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + LIST_ROW_COLUMNS + ", rank_info FROM " + TABLE_PASSENGERS
+                        + " JOIN (SELECT docid, matchinfo(" + TABLE_PASSENGER_SEARCH + ", 'pcx') AS rank_info"
+                        + " FROM " + TABLE_PASSENGER_SEARCH + " WHERE " + TABLE_PASSENGER_SEARCH + " MATCH ?"
+                        + " LIMIT " + SEARCH_CANDIDATES + ") ON " + KEY_ID + " = docid",
+                new String[]{match});
+
+        while (cursor.moveToNext()) {
+            results.add(listRowFromCursor(cursor));
+            scores.add(rank(toInts(cursor.getBlob(7))));
+        }
         cursor.close();
-        db.close();
-        return passengerList;
+
+        // SQLite on Android cannot call back into Java, so rank here
+        List<Integer> order = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, (a, b) -> {
+            int byScore = Double.compare(scores.get(b), scores.get(a));
+            return byScore != 0 ? byScore : Integer.compare(results.get(b).getId(), results.get(a).getId());
+        });
+
+        List<Passenger> ranked = new ArrayList<>(Math.min(limit, order.size()));
+        for (int i = 0; i < order.size() && i < limit; i++) {
+            ranked.add(results.get(order.get(i)));
+        }
+        return ranked;
+    }
+
+    // "Ada Love" -> "ada* love*". Only letters and digits survive, so user
+    // input can never form FTS operators or unbalanced quotes
+    static String toPrefixQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(word).append('*');
+        }
+        return match.toString();
+    }
+
+    // Scores matchinfo 'pcx' output: phrase count, column count, then per
+    // phrase and column the hits in this row, in all rows and rows with hits.
+    // Each column hit adds its weight, scaled down for words common everywhere
+    static double rank(int[] matchinfo) {
+        int phrases = matchinfo[0];
+        int columns = matchinfo[1];
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int offset = 2 + 3 * (phrase * columns + column);
+                int rowHits = matchinfo[offset];
+                if (rowHits > 0) {
+                    score += SEARCH_WEIGHTS[column] * rowHits / matchinfo[offset + 1];
+                }
+            }
+        }
+        return score;
+    }
+
+    // matchinfo returns 32-bit unsigned ints in native byte order
+    private static int[] toInts(byte[] blob) {
+        int[] ints = new int[blob.length / 4];
+        ByteBuffer.wrap(blob).order(ByteOrder.nativeOrder()).asIntBuffer().get(ints);
+        return ints;
     }
 
     // Update a passenger
@@ -186,33 +671,304 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(KEY_DATE_OF_BIRTH, passenger.getDateOfBirth());
         values.put(KEY_MEMBERSHIP_LEVEL, passenger.getMembershipLevel());
         values.put(KEY_IS_ACTIVE, passenger.isActive() ? 1 : 0);
-        values.put(KEY_PROFILE_IMAGE, passenger.getProfileImagePath());
+        values.put(KEY_PROFILE_IMAGE, storeProfileImage(passenger));
+        values.put(KEY_PROFILE_THUMBNAIL, storeThumbnail(passenger));
 
-        int rowsAffected = db.update(TABLE_PASSENGERS, values,
-                KEY_ID + " = ?",
-                new String[]{String.valueOf(passenger.getId())});
-        
-        db.close();
-        return rowsAffected;
+        db.beginTransaction();
+        try {
+            int passengerId = resolvePassengerId(db, passenger.getId());
+            int rowsAffected = db.update(TABLE_PASSENGERS, values,
+                    KEY_ID + " = ?",
+                    new String[]{String.valueOf(passengerId)});
+            if (rowsAffected > 0) {
+                enqueueMutation(db, OutboxEntry.ENTITY_PASSENGER, passengerId, OutboxEntry.OP_UPDATE);
+            }
+            db.setTransactionSuccessful();
+            return rowsAffected;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Record a full image downloaded from the server. The server already has
+     * it, so unlike {@link #updatePassenger} nothing is queued for replication.
+     */
+    public int setProfileImage(int id, String hash) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(KEY_PROFILE_IMAGE, hash);
+        return db.update(TABLE_PASSENGERS, values, KEY_ID + " = ?",
+                new String[]{String.valueOf(resolvePassengerId(db, id))});
     }
 
     // Delete a passenger
     public void deletePassenger(int id) {
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_PASSENGERS, KEY_ID + " = ?",
+        db.beginTransaction();
+        try {
+            int passengerId = resolvePassengerId(db, id);
+            int rowsAffected = db.delete(TABLE_PASSENGERS, KEY_ID + " = ?",
+                    new String[]{String.valueOf(passengerId)});
+            if (rowsAffected > 0) {
+                enqueueMutation(db, OutboxEntry.ENTITY_PASSENGER, passengerId, OutboxEntry.OP_DELETE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Replace the local passenger table with a server snapshot in a single
+     * transaction. Rows are written through compiled statements and passengers
+     * that are no longer on the server are removed with set-based deletes.
+     */
+    public SyncReport applySnapshot(List<Passenger> serverPassengers) {
+        return applyChanges(new PassengerChanges(serverPassengers, new ArrayList<>(), null, true));
+    }
+
+    /**
+     * Merge server changes into the passenger table and store the new sync
+     * token, all in one transaction. A delta only touches the changed and
+     * deleted rows, so its cost does not depend on the size of the table.
+     */
+    public SyncReport applyChanges(PassengerChanges changes) {
+        long start = SystemClock.elapsedRealtime();
+        SyncReport report = new SyncReport();
+        SQLiteDatabase db = this.getWritableDatabase();
+
+        db.beginTransaction();
+        try {
+            SQLiteStatement insert = db.compileStatement(SQL_INSERT_PASSENGER);
+            SQLiteStatement update = db.compileStatement(SQL_UPDATE_PASSENGER);
+            // Local edits not yet replicated win over what the server sent
+            Set<Integer> pendingIds = getPendingPassengerIds(db);
+            Set<Integer> serverIds = new HashSet<>();
+            boolean heldBack = false;
+            for (Passenger passenger : changes.getPassengers()) {
+                serverIds.add(passenger.getId());
+                if (pendingIds.contains(passenger.getId())) {
+                    heldBack = true;
+                    continue;
+                }
+                bindPassenger(update, passenger);
+                if (update.executeUpdateDelete() > 0) {
+                    report.updated++;
+                } else {
+                    bindPassenger(insert, passenger);
+                    insert.executeInsert();
+                    report.inserted++;
+                }
+            }
+            insert.close();
+            update.close();
+
+            List<Integer> missingIds;
+            if (changes.isFullSnapshot()) {
+                missingIds = new ArrayList<>();
+                for (Integer localId : getPassengerIds(db)) {
+                    if (!serverIds.contains(localId) && !pendingIds.contains(localId)) {
+                        missingIds.add(localId);
+                    }
+                }
+            } else {
+                missingIds = new ArrayList<>();
+                for (Integer deletedId : changes.getDeletedIds()) {
+                    if (!pendingIds.contains(deletedId)) {
+                        missingIds.add(deletedId);
+                    } else {
+                        heldBack = true;
+                    }
+                }
+            }
+            report.deleted = deletePassengers(db, missingIds);
+
+            // A server row skipped for a pending edit must come again: the edit
+            // may be rejected, or be a local create that only shares the id and
+            // moves to another one once sent. So the sync state only advances
+            // past responses that were applied in full
+            if (!heldBack) {
+                if (changes.getSyncToken() != null) {
+                    putSyncState(db, SYNC_KEY_PASSENGERS, changes.getSyncToken());
+                }
+                // Committed with the rows it describes, so a 304 is only trusted
+                // for a response that was fully applied
+                putSyncState(db, SYNC_KEY_PASSENGERS_ETAG, changes.getEtag());
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (report.getTotalRows() > 0) {
+            imageStore.retainOnly(getProfileImageHashes(db));
+        }
+
+        report.durationMs = SystemClock.elapsedRealtime() - start;
+        Log.d(TAG, (changes.isFullSnapshot() ? "Snapshot" : "Delta") + " applied: " + report);
+        return report;
+    }
+
+    // Get the sync token of the last passenger sync, or null if none has completed
+    public String getPassengerSyncToken() {
+        return getSyncState(this.getReadableDatabase(), SYNC_KEY_PASSENGERS);
+    }
+
+    // Sync token and ETag of the last passenger sync, for the next conditional request
+    public SyncState getPassengerSyncState() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return new SyncState(getSyncState(db, SYNC_KEY_PASSENGERS),
+                getSyncState(db, SYNC_KEY_PASSENGERS_ETAG));
+    }
+
+    private String getSyncState(SQLiteDatabase db, String key) {
+        Cursor cursor = db.query(TABLE_SYNC_STATE,
+                new String[]{KEY_SYNC_VALUE},
+                KEY_SYNC_KEY + "=?",
+                new String[]{key},
+                null, null, null);
+
+        String value = null;
+        if (cursor.moveToFirst()) {
+            value = cursor.getString(0);
+        }
+        cursor.close();
+        return value;
+    }
+
+    private void putSyncState(SQLiteDatabase db, String key, String value) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_SYNC_KEY, key);
+        values.put(KEY_SYNC_VALUE, value);
+        db.insertWithOnConflict(TABLE_SYNC_STATE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Move a locally created passenger to the id the server assigned to it,
+     * along with its bookings. A copy that already arrived through sync is
+     * replaced by the local row. The local id stays an alias of the server
+     * id, see {@link #resolvePassengerId}.
+     */
+    public void remapPassengerId(int localId, int serverId) {
+        if (localId == serverId) {
+            return;
+        }
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_PASSENGERS, KEY_ID + " = ?", new String[]{String.valueOf(serverId)});
+
+            ContentValues passengerValues = new ContentValues();
+            passengerValues.put(KEY_ID, serverId);
+            db.update(TABLE_PASSENGERS, passengerValues, KEY_ID + " = ?",
+                    new String[]{String.valueOf(localId)});
+
+            ContentValues bookingValues = new ContentValues();
+            bookingValues.put(KEY_PASSENGER_ID, serverId);
+            db.update(TABLE_BOOKINGS, bookingValues, KEY_PASSENGER_ID + " = ?",
+                    new String[]{String.valueOf(localId)});
+
+            // Screens may still hold the local id, it keeps finding the row
+            ContentValues aliasValues = new ContentValues();
+            aliasValues.put(KEY_ALIAS_LOCAL_ID, localId);
+            aliasValues.put(KEY_ALIAS_SERVER_ID, serverId);
+            db.insertWithOnConflict(TABLE_PASSENGER_ALIASES, null, aliasValues,
+                    SQLiteDatabase.CONFLICT_REPLACE);
+
+            // Later sends of this passenger go to its server id
+            ContentValues outboxValues = new ContentValues();
+            outboxValues.put(KEY_OUTBOX_ENTITY_ID, serverId);
+            db.updateWithOnConflict(TABLE_OUTBOX, outboxValues,
+                    KEY_OUTBOX_ENTITY + " = ? AND " + KEY_OUTBOX_ENTITY_ID + " = ?",
+                    new String[]{OutboxEntry.ENTITY_PASSENGER, String.valueOf(localId)},
+                    SQLiteDatabase.CONFLICT_REPLACE);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // The id a passenger has now: the server id for a local id that was
+    // remapped, unless a row still or again has the local id
+    private int resolvePassengerId(SQLiteDatabase db, int id) {
+        Cursor cursor = db.rawQuery("SELECT " + KEY_ALIAS_SERVER_ID + " FROM " + TABLE_PASSENGER_ALIASES
+                        + " WHERE " + KEY_ALIAS_LOCAL_ID + " = ?1 AND NOT EXISTS (SELECT 1 FROM "
+                        + TABLE_PASSENGERS + " WHERE " + KEY_ID + " = ?1)",
                 new String[]{String.valueOf(id)});
-        db.close();
+        int resolved = cursor.moveToFirst() ? cursor.getInt(0) : id;
+        cursor.close();
+        return resolved;
+    }
+
+    private Set<String> getProfileImageHashes(SQLiteDatabase db) {
+        Set<String> hashes = new HashSet<>();
+        Cursor cursor = db.rawQuery("SELECT " + KEY_PROFILE_IMAGE + " FROM " + TABLE_PASSENGERS
+                + " WHERE " + KEY_PROFILE_IMAGE + " IS NOT NULL"
+                + " UNION SELECT " + KEY_PROFILE_THUMBNAIL + " FROM " + TABLE_PASSENGERS
+                + " WHERE " + KEY_PROFILE_THUMBNAIL + " IS NOT NULL", null);
+        while (cursor.moveToNext()) {
+            hashes.add(cursor.getString(0));
+        }
+        cursor.close();
+        return hashes;
+    }
+
+    private Set<Integer> getPassengerIds(SQLiteDatabase db) {
+        Set<Integer> ids = new HashSet<>();
+        Cursor cursor = db.rawQuery("SELECT " + KEY_ID + " FROM " + TABLE_PASSENGERS, null);
+        while (cursor.moveToNext()) {
+            ids.add(cursor.getInt(0));
+        }
+        cursor.close();
+        return ids;
+    }
+
+    // Delete in chunks to stay below SQLite's bound-parameter limit
+    private int deletePassengers(SQLiteDatabase db, List<Integer> ids) {
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += DELETE_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + DELETE_CHUNK_SIZE, ids.size()));
+            StringBuilder placeholders = new StringBuilder();
+            String[] args = new String[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                placeholders.append(i == 0 ? "?" : ",?");
+                args[i] = String.valueOf(chunk.get(i));
+            }
+            deleted += db.delete(TABLE_PASSENGERS, KEY_ID + " IN (" + placeholders + ")", args);
+        }
+        return deleted;
+    }
+
+    // Binds the passenger parameters of the upsert statements
+    private void bindPassenger(SQLiteStatement statement, Passenger passenger) {
+        statement.clearBindings();
+        bindNullable(statement, 1, passenger.getFullName());
+        bindNullable(statement, 2, passenger.getEmail());
+        bindNullable(statement, 3, passenger.getPhone());
+        bindNullable(statement, 4, passenger.getDateOfBirth());
+        bindNullable(statement, 5, passenger.getMembershipLevel());
+        statement.bindLong(6, passenger.isActive() ? 1 : 0);
+        bindNullable(statement, 7, storeProfileImage(passenger));
+        bindNullable(statement, 8, storeThumbnail(passenger));
+        statement.bindLong(9, passenger.getProfileImageUrl() != null ? 1 : 0);
+        statement.bindLong(10, passenger.getId());
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
     }
 
     // Get passenger count
     public int getPassengerCount() {
-        String countQuery = "SELECT * FROM " + TABLE_PASSENGERS;
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery(countQuery, null);
-        int count = cursor.getCount();
-        cursor.close();
-        db.close();
-        return count;
+        return (int) DatabaseUtils.queryNumEntries(db, TABLE_PASSENGERS);
     }
 
     // Add a booking for a passenger
@@ -221,15 +977,48 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         
-        values.put(KEY_PASSENGER_ID, passengerId);
+        values.put(KEY_PASSENGER_ID, resolvePassengerId(db, passengerId));
         values.put(KEY_FLIGHT_NUMBER, flightNumber);
         values.put(KEY_BOOKING_DATE, bookingDate);
         values.put(KEY_SEAT_NUMBER, seatNumber);
         values.put(KEY_STATUS, status);
 
-        long id = db.insert(TABLE_BOOKINGS, null, values);
-        db.close();
-        return id;
+        db.beginTransaction();
+        try {
+            long id = db.insert(TABLE_BOOKINGS, null, values);
+            if (id != -1) {
+                enqueueMutation(db, OutboxEntry.ENTITY_BOOKING, id, OutboxEntry.OP_CREATE);
+            }
+            db.setTransactionSuccessful();
+            return id;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Get a single booking by ID
+    public FlightBooking getBooking(int id) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_BOOKINGS,
+                new String[]{KEY_BOOKING_ID, KEY_PASSENGER_ID, KEY_FLIGHT_NUMBER,
+                        KEY_BOOKING_DATE, KEY_SEAT_NUMBER, KEY_STATUS},
+                KEY_BOOKING_ID + "=?",
+                new String[]{String.valueOf(id)},
+                null, null, null);
+
+        FlightBooking booking = null;
+        if (cursor.moveToFirst()) {
+            booking = new FlightBooking(
+                    cursor.getInt(0),
+                    cursor.getInt(1),
+                    cursor.getString(2),
+                    cursor.getString(3),
+                    cursor.getString(4),
+                    cursor.getString(5)
+            );
+        }
+        cursor.close();
+        return booking;
     }
 
     // Get all bookings for a specific passenger
@@ -241,7 +1030,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 new String[]{KEY_BOOKING_ID, KEY_PASSENGER_ID, KEY_FLIGHT_NUMBER,
                         KEY_BOOKING_DATE, KEY_SEAT_NUMBER, KEY_STATUS},
                 KEY_PASSENGER_ID + "=?",
-                new String[]{String.valueOf(passengerId)},
+                new String[]{String.valueOf(resolvePassengerId(db, passengerId))},
                 null, null, KEY_BOOKING_DATE + " DESC");
         
         if (cursor.moveToFirst()) {
@@ -259,23 +1048,15 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
         
         cursor.close();
-        db.close();
         return bookingList;
     }
 
     // Get booking count for a passenger
     public int getBookingCountForPassenger(int passengerId) {
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_BOOKINGS,
-                null,
+        return (int) DatabaseUtils.queryNumEntries(db, TABLE_BOOKINGS,
                 KEY_PASSENGER_ID + "=?",
-                new String[]{String.valueOf(passengerId)},
-                null, null, null);
-        
-        int count = cursor.getCount();
-        cursor.close();
-        db.close();
-        return count;
+                new String[]{String.valueOf(passengerId)});
     }
 
     // Delete a booking
@@ -283,6 +1064,239 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getWritableDatabase();
         db.delete(TABLE_BOOKINGS, KEY_BOOKING_ID + " = ?",
                 new String[]{String.valueOf(bookingId)});
-        db.close();
+    }
+
+    // Folds a local write into the outbox entry for its row, see OutboxEntry
+    private void enqueueMutation(SQLiteDatabase db, String entity, long entityId, String op) {
+        Cursor cursor = db.query(TABLE_OUTBOX,
+                new String[]{KEY_OUTBOX_ID, KEY_OUTBOX_OP, KEY_OUTBOX_IN_FLIGHT},
+                KEY_OUTBOX_ENTITY + " = ? AND " + KEY_OUTBOX_ENTITY_ID + " = ?",
+                new String[]{entity, String.valueOf(entityId)},
+                null, null, null);
+
+        if (!cursor.moveToFirst()) {
+            cursor.close();
+            ContentValues values = new ContentValues();
+            values.put(KEY_OUTBOX_ENTITY, entity);
+            values.put(KEY_OUTBOX_ENTITY_ID, entityId);
+            values.put(KEY_OUTBOX_OP, op);
+            db.insert(TABLE_OUTBOX, null, values);
+            return;
+        }
+
+        long outboxId = cursor.getLong(0);
+        String pendingOp = cursor.getString(1);
+        boolean inFlight = cursor.getInt(2) == 1;
+        cursor.close();
+
+        if (OutboxEntry.OP_DELETE.equals(op) && OutboxEntry.OP_CREATE.equals(pendingOp) && !inFlight) {
+            // The server never saw the row, there is nothing left to replicate
+            db.delete(TABLE_OUTBOX, KEY_OUTBOX_ID + " = ?", new String[]{String.valueOf(outboxId)});
+            return;
+        }
+
+        // The payload is read when the entry is sent, so an update folds into
+        // any pending op; a delete replaces it. The new edit is retried right away
+        String mergedOp = OutboxEntry.OP_UPDATE.equals(op) ? pendingOp : op;
+        db.execSQL("UPDATE " + TABLE_OUTBOX + " SET " + KEY_OUTBOX_OP + " = ?, "
+                        + KEY_OUTBOX_REVISION + " = " + KEY_OUTBOX_REVISION + " + 1, "
+                        + KEY_OUTBOX_ATTEMPTS + " = 0, " + KEY_OUTBOX_NEXT_ATTEMPT_AT + " = 0"
+                        + " WHERE " + KEY_OUTBOX_ID + " = ?",
+                new Object[]{mergedOp, outboxId});
+    }
+
+    /**
+     * The oldest outbox entries that are ready to send, in the order the
+     * writes were made. Stops at the first entry still backing off, so a
+     * booking is never sent ahead of the passenger it belongs to.
+     */
+    public List<OutboxEntry> getDueOutboxEntries(long now, int limit) {
+        List<OutboxEntry> entries = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_OUTBOX,
+                new String[]{KEY_OUTBOX_ID, KEY_OUTBOX_ENTITY, KEY_OUTBOX_ENTITY_ID, KEY_OUTBOX_OP,
+                        KEY_OUTBOX_REVISION, KEY_OUTBOX_ATTEMPTS, KEY_OUTBOX_NEXT_ATTEMPT_AT},
+                KEY_OUTBOX_IN_FLIGHT + " = 0",
+                null, null, null, KEY_OUTBOX_ID, String.valueOf(limit));
+
+        while (cursor.moveToNext() && cursor.getLong(6) <= now) {
+            entries.add(new OutboxEntry(
+                    cursor.getLong(0),
+                    cursor.getString(1),
+                    cursor.getInt(2),
+                    cursor.getString(3),
+                    cursor.getInt(4),
+                    cursor.getInt(5)
+            ));
+        }
+        cursor.close();
+        return entries;
+    }
+
+    // When the oldest outbox entry may be sent again, or -1 if the outbox is empty
+    public long getNextOutboxAttemptAt() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_OUTBOX,
+                new String[]{KEY_OUTBOX_NEXT_ATTEMPT_AT},
+                KEY_OUTBOX_IN_FLIGHT + " = 0",
+                null, null, null, KEY_OUTBOX_ID, "1");
+
+        long nextAttemptAt = -1;
+        if (cursor.moveToFirst()) {
+            nextAttemptAt = cursor.getLong(0);
+        }
+        cursor.close();
+        return nextAttemptAt;
+    }
+
+    // Record that the entry is being sent
+    public void markOutboxInFlight(OutboxEntry entry) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.execSQL("UPDATE " + TABLE_OUTBOX + " SET " + KEY_OUTBOX_IN_FLIGHT + " = 1, "
+                        + KEY_OUTBOX_ATTEMPTS + " = " + KEY_OUTBOX_ATTEMPTS + " + 1"
+                        + " WHERE " + KEY_OUTBOX_ID + " = ?",
+                new Object[]{entry.getId()});
+    }
+
+    /**
+     * Remove an entry the server accepted. A passenger create first moves the
+     * local row to the id the server assigned. If the row was edited while the
+     * send was in flight the entry stays, as an update when it was a create,
+     * and is sent again.
+     */
+    public void completeOutboxEntry(OutboxEntry entry, int serverId) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (OutboxEntry.ENTITY_PASSENGER.equals(entry.getEntity())
+                    && OutboxEntry.OP_CREATE.equals(entry.getOp())) {
+                remapPassengerId(entry.getEntityId(), serverId);
+            }
+
+            String[] idArgs = {String.valueOf(entry.getId())};
+            int deleted = db.delete(TABLE_OUTBOX,
+                    KEY_OUTBOX_ID + " = ? AND " + KEY_OUTBOX_REVISION + " = ?",
+                    new String[]{String.valueOf(entry.getId()), String.valueOf(entry.getRevision())});
+            if (deleted == 0) {
+                ContentValues values = new ContentValues();
+                values.put(KEY_OUTBOX_IN_FLIGHT, 0);
+                values.put(KEY_OUTBOX_ATTEMPTS, 0);
+                values.put(KEY_OUTBOX_NEXT_ATTEMPT_AT, 0);
+                db.update(TABLE_OUTBOX, values, KEY_OUTBOX_ID + " = ?", idArgs);
+
+                ContentValues createDone = new ContentValues();
+                createDone.put(KEY_OUTBOX_OP, OutboxEntry.OP_UPDATE);
+                db.update(TABLE_OUTBOX, createDone, KEY_OUTBOX_ID + " = ? AND " + KEY_OUTBOX_OP + " = ?",
+                        new String[]{idArgs[0], OutboxEntry.OP_CREATE});
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Keep a failed entry and try it again at nextAttemptAt
+    public void deferOutboxEntry(OutboxEntry entry, long nextAttemptAt, String error) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(KEY_OUTBOX_IN_FLIGHT, 0);
+        values.put(KEY_OUTBOX_NEXT_ATTEMPT_AT, nextAttemptAt);
+        values.put(KEY_OUTBOX_LAST_ERROR, error);
+        db.update(TABLE_OUTBOX, values, KEY_OUTBOX_ID + " = ?",
+                new String[]{String.valueOf(entry.getId())});
+    }
+
+    /**
+     * Give up on an entry the server rejected or whose row no longer exists.
+     * The local passenger then no longer matches the server's, which a delta
+     * sync would not resend if it has not changed there, so the next passenger
+     * sync is a full snapshot.
+     */
+    public void dropOutboxEntry(OutboxEntry entry) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_OUTBOX, KEY_OUTBOX_ID + " = ?",
+                    new String[]{String.valueOf(entry.getId())});
+            if (OutboxEntry.ENTITY_PASSENGER.equals(entry.getEntity())) {
+                db.delete(TABLE_SYNC_STATE, KEY_SYNC_KEY + " IN (?, ?)",
+                        new String[]{SYNC_KEY_PASSENGERS, SYNC_KEY_PASSENGERS_ETAG});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Sends cut short by the process dying are sent again
+    public void resetOutboxInFlight() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(KEY_OUTBOX_IN_FLIGHT, 0);
+        db.update(TABLE_OUTBOX, values, KEY_OUTBOX_IN_FLIGHT + " = 1", null);
+    }
+
+    // Make every backing-off entry due now, e.g. once the network is back
+    public void retryOutboxNow() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(KEY_OUTBOX_NEXT_ATTEMPT_AT, 0);
+        db.update(TABLE_OUTBOX, values, KEY_OUTBOX_NEXT_ATTEMPT_AT + " > 0", null);
+    }
+
+    private Set<Integer> getPendingPassengerIds(SQLiteDatabase db) {
+        Set<Integer> ids = new HashSet<>();
+        Cursor cursor = db.query(TABLE_OUTBOX,
+                new String[]{KEY_OUTBOX_ENTITY_ID},
+                KEY_OUTBOX_ENTITY + " = ?",
+                new String[]{OutboxEntry.ENTITY_PASSENGER},
+                null, null, null);
+        while (cursor.moveToNext()) {
+            ids.add(cursor.getInt(0));
+        }
+        cursor.close();
+        return ids;
+    }
+
+    /**
+     * Where the last passenger sync left off
+     */
+    public static class SyncState {
+        private final String syncToken;
+        private final String etag;
+
+        public SyncState(String syncToken, String etag) {
+            this.syncToken = syncToken;
+            this.etag = etag;
+        }
+
+        public String getSyncToken() {
+            return syncToken;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    /**
+     * Row counts and latency of a server to SQLite reconciliation
+     */
+    public static class SyncReport {
+        public int inserted;
+        public int updated;
+        public int deleted;
+        public long durationMs;
+
+        public int getTotalRows() {
+            return inserted + updated + deleted;
+        }
+
+        @Override
+        public String toString() {
+            return inserted + " inserted, " + updated + " updated, " + deleted
+                    + " deleted in " + durationMs + " ms";
+        }
     }
 }
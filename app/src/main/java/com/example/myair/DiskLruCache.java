@@ -0,0 +1,319 @@
+package com.example.myair;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Byte-budgeted cache of blobs in a directory, one file per entry, evicting
+ * the least recently used entries first.
+ *
+ * Every put, read and removal is appended to a journal, so the recency order
+ * survives a restart without reading or stat-ing every entry. The journal is
+ * replayed when the cache is opened and rewritten once it holds far more
+ * lines than there are entries. A file only counts as an entry after its PUT
+ * line is written, so a crash mid-write leaves a stray file that is deleted
+ * on the next open rather than a half-written entry.
+ *
+ * Plain Java with no Android dependencies, so it can be tested on the host.
+ */
+public class DiskLruCache {
+    static final String JOURNAL_FILE = "journal";
+    private static final String JOURNAL_TEMP_FILE = "journal.tmp";
+    private static final String MAGIC = "myair.DiskLruCache";
+    private static final String VERSION = "1";
+
+    private static final String PUT = "PUT";
+    private static final String READ = "READ";
+    private static final String REMOVE = "REMOVE";
+
+    // Journal lines that no longer describe an entry before it is rewritten
+    private static final int COMPACT_THRESHOLD = 2000;
+    private static final Pattern KEY_PATTERN = Pattern.compile("[a-z0-9_-]{1,120}");
+
+    private final File directory;
+    private final long maxBytes;
+    // Access order: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(0, 0.75f, true);
+    private long size;
+    private int redundantLines;
+    private Writer journal;
+
+    /**
+     * Open the cache in the directory, creating it if needed
+     * @param maxBytes Total size of the entries kept, older entries are evicted past it
+     */
+    public DiskLruCache(File directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        open();
+    }
+
+    /**
+     * @return The entry's bytes, or null if it is not cached
+     */
+    public synchronized byte[] get(String key) {
+        checkKey(key);
+        Long length = entries.get(key);
+        if (length == null) {
+            return null;
+        }
+
+        byte[] value = new byte[length.intValue()];
+        try (InputStream in = new FileInputStream(entryFile(key))) {
+            int offset = 0;
+            while (offset < value.length) {
+                int read = in.read(value, offset, value.length - offset);
+                if (read < 0) {
+                    throw new IOException("Entry " + key + " is truncated");
+                }
+                offset += read;
+            }
+        } catch (IOException e) {
+            // Deleted or damaged behind our back, e.g. by the system clearing the cache dir
+            remove(key);
+            return null;
+        }
+
+        // Not flushed: losing a few reads in a crash only makes eviction slightly less exact
+        appendToJournal(READ + ' ' + key, false);
+        redundantLines++;
+        compactIfNeeded();
+        return value;
+    }
+
+    /**
+     * Store the value under the key, replacing any previous value, and evict
+     * older entries until the cache is back within its budget. A value larger
+     * than the whole budget is not stored.
+     * @return true if the value was stored
+     */
+    public synchronized boolean put(String key, byte[] value) {
+        checkKey(key);
+        if (value.length > maxBytes) {
+            return false;
+        }
+
+        File temp = new File(directory, key + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(value);
+        } catch (IOException e) {
+            temp.delete();
+            return false;
+        }
+        if (!temp.renameTo(entryFile(key))) {
+            temp.delete();
+            return false;
+        }
+
+        Long previous = entries.put(key, (long) value.length);
+        if (previous != null) {
+            size -= previous;
+            redundantLines++;
+        }
+        size += value.length;
+        appendToJournal(PUT + ' ' + key + ' ' + value.length, true);
+
+        trimToSize();
+        compactIfNeeded();
+        return true;
+    }
+
+    public synchronized void remove(String key) {
+        checkKey(key);
+        Long length = entries.remove(key);
+        if (length == null) {
+            return;
+        }
+        size -= length;
+        // Journaled before the file goes, so a crash in between leaves a stray file, not a dangling entry
+        appendToJournal(REMOVE + ' ' + key, true);
+        entryFile(key).delete();
+        redundantLines += 2;
+        compactIfNeeded();
+    }
+
+    // Total bytes of the cached entries
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized int entryCount() {
+        return entries.size();
+    }
+
+    public synchronized void close() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ignored) {
+            }
+            journal = null;
+        }
+    }
+
+    private void open() throws IOException {
+        File journalFile = new File(directory, JOURNAL_FILE);
+        boolean clean = journalFile.exists() && readJournal(journalFile);
+        if (!clean) {
+            // Missing, foreign or damaged journal: start over rather than guess
+            entries.clear();
+        }
+
+        size = 0;
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            File file = entryFile(entry.getKey());
+            if (file.length() != entry.getValue()) {
+                iterator.remove();
+                file.delete();
+            } else {
+                size += entry.getValue();
+            }
+        }
+        deleteStrayFiles();
+
+        // A fresh journal, so replaying starts from exactly the entries that survived
+        rewriteJournal();
+        trimToSize();
+    }
+
+    // Replays the journal into entries, returns false if it cannot be trusted
+    private boolean readJournal(File journalFile) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+            if (!MAGIC.equals(reader.readLine()) || !VERSION.equals(reader.readLine())) {
+                return false;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length < 2 || !KEY_PATTERN.matcher(parts[1]).matches()) {
+                    // A torn last line from a crash, what came before it is still good
+                    break;
+                }
+                String key = parts[1];
+                if (PUT.equals(parts[0]) && parts.length == 3) {
+                    entries.put(key, Long.parseLong(parts[2]));
+                } else if (READ.equals(parts[0])) {
+                    entries.get(key);
+                } else if (REMOVE.equals(parts[0])) {
+                    entries.remove(key);
+                } else {
+                    break;
+                }
+            }
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void deleteStrayFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.equals(JOURNAL_FILE) && !entries.containsKey(name)) {
+                file.delete();
+            }
+        }
+    }
+
+    private void trimToSize() {
+        if (size <= maxBytes) {
+            return;
+        }
+        List<String> evicted = new ArrayList<>();
+        long remaining = size;
+        for (Map.Entry<String, Long> entry : entries.entrySet()) {
+            if (remaining <= maxBytes) {
+                break;
+            }
+            evicted.add(entry.getKey());
+            remaining -= entry.getValue();
+        }
+        for (String key : evicted) {
+            remove(key);
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (redundantLines >= COMPACT_THRESHOLD && redundantLines >= entries.size()) {
+            try {
+                rewriteJournal();
+            } catch (IOException e) {
+                // Keep appending to the long journal, compaction is retried on the next write
+            }
+        }
+    }
+
+    // Writes one PUT per entry, least recently used first, and swaps it in for the journal
+    private void rewriteJournal() throws IOException {
+        close();
+        File temp = new File(directory, JOURNAL_TEMP_FILE);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            writer.write(MAGIC + '\n' + VERSION + '\n');
+            for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                writer.write(PUT + ' ' + entry.getKey() + ' ' + entry.getValue() + '\n');
+            }
+        }
+        File journalFile = new File(directory, JOURNAL_FILE);
+        if (!temp.renameTo(journalFile)) {
+            throw new IOException("Could not replace " + journalFile);
+        }
+        journal = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(journalFile, true), StandardCharsets.UTF_8));
+        redundantLines = 0;
+    }
+
+    private void appendToJournal(String line, boolean flush) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.write(line + '\n');
+            if (flush) {
+                journal.flush();
+            }
+        } catch (IOException e) {
+            // The entry is still usable now; if the journal is lost the next open starts empty
+            close();
+        }
+    }
+
+    private File entryFile(String key) {
+        return new File(directory, key);
+    }
+
+    private static void checkKey(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches() || key.equals(JOURNAL_FILE)) {
+            throw new IllegalArgumentException("Invalid cache key: " + key);
+        }
+    }
+}
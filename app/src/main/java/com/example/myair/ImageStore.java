@@ -0,0 +1,228 @@
+package com.example.myair;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Content-addressed store for profile images. Each image is written once to
+ * app storage under the SHA-256 of its bytes, and the database only keeps that
+ * hash, so passenger rows stay small however large the images are.
+ */
+public class ImageStore {
+    private static final String TAG = "ImageStore";
+    private static final String DIRECTORY = "profile_images";
+    private static final int HASH_LENGTH = 64;
+    // How long an image nothing refers to yet is safe from retainOnly
+    private static final long RETAIN_GRACE_MS = 10 * 60 * 1000;
+
+    private static ImageStore instance;
+
+    private final File directory;
+    // Hashes retainOnly must keep whatever their age, with how often each is pinned
+    private final Map<String, Integer> pinned = new HashMap<>();
+
+    private ImageStore(Context context) {
+        directory = new File(context.getFilesDir(), DIRECTORY);
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "Could not create " + directory);
+        }
+    }
+
+    public static synchronized ImageStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Store a Base64 encoded image. The text is decoded and written to disk a
+     * buffer at a time, so the decoded image is never held in memory.
+     * @return SHA-256 hash of the image bytes, or null if there is no image or
+     *         it could not be decoded or written
+     */
+    public String putBase64(CharSequence base64Image) {
+        if (base64Image == null || base64Image.length() == 0) {
+            return null;
+        }
+        return put(out -> ImageUtils.copy(ImageUtils.openBase64(base64Image), out));
+    }
+
+    /**
+     * Store encoded image bytes
+     * @return SHA-256 hash of the bytes, or null if they could not be written
+     */
+    public String put(byte[] bytes) {
+        return put(out -> out.write(bytes));
+    }
+
+    /**
+     * Compress a bitmap straight into the store, with no copy of the encoded
+     * image in memory
+     * @return SHA-256 hash of the encoded bytes, or null if encoding or writing failed
+     */
+    public String put(Bitmap bitmap, Bitmap.CompressFormat format, int quality) {
+        return put(out -> {
+            if (!bitmap.compress(format, quality, out)) {
+                throw new IOException("Bitmap could not be compressed");
+            }
+        });
+    }
+
+    // Writes to a temp file while hashing, then moves it to its hash, so readers never see a partial image
+    private String put(Source source) {
+        File temp;
+        MessageDigest digest = newDigest();
+        try {
+            temp = File.createTempFile("put", ".tmp", directory);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing image: " + e.getMessage());
+            return null;
+        }
+        try (OutputStream out = new DigestOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp), ImageUtils.STREAM_BUFFER_SIZE), digest)) {
+            source.writeTo(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing image: " + e.getMessage());
+            temp.delete();
+            return null;
+        }
+
+        String hash = toHex(digest.digest());
+        File file = getFile(hash);
+        if (file.exists()) {
+            // Same content is already stored; touch it so retainOnly treats it as new
+            temp.delete();
+            file.setLastModified(System.currentTimeMillis());
+            return hash;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return file.exists() ? hash : null;
+        }
+        return hash;
+    }
+
+    /**
+     * Read a stored image back as Base64, e.g. to send it to the server
+     * @return Base64 string, or null if the image is not stored
+     */
+    public String readBase64(String hash) {
+        File file = getFile(hash);
+        if (hash == null || !file.exists()) {
+            return null;
+        }
+        // Encoded straight from the file into a buffer of the final size
+        long length = file.length();
+        ByteArrayOutputStream base64 = new ByteArrayOutputStream((int) ((length + 2) / 3 * 4));
+        try (InputStream in = new FileInputStream(file)) {
+            ImageUtils.writeBase64(in, base64);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading image: " + e.getMessage());
+            return null;
+        }
+        return new String(base64.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    public File getFile(String hash) {
+        return new File(directory, hash + ".img");
+    }
+
+    /**
+     * Keep an image from retainOnly until it is unpinned, e.g. while a form
+     * holds it and no row refers to it yet. Pins are counted, ignores null.
+     */
+    public synchronized void pin(String hash) {
+        if (hash != null) {
+            pinned.merge(hash, 1, Integer::sum);
+        }
+    }
+
+    public synchronized void unpin(String hash) {
+        Integer count = hash != null ? pinned.get(hash) : null;
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            pinned.put(hash, count - 1);
+        } else {
+            pinned.remove(hash);
+        }
+    }
+
+    /**
+     * Delete every stored image whose hash is not in the given set and is not
+     * pinned. Files written in the last few minutes are kept too: they may
+     * belong to a passenger whose row is still waiting to be saved.
+     */
+    public synchronized void retainOnly(Set<String> hashes) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - RETAIN_GRACE_MS;
+        for (File file : files) {
+            String name = file.getName();
+            String hash = name.length() >= HASH_LENGTH ? name.substring(0, HASH_LENGTH) : null;
+            boolean referenced = hash != null && (hashes.contains(hash) || pinned.containsKey(hash));
+            if (!referenced && file.lastModified() < cutoff) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Whether a column value is an image hash rather than legacy Base64 data
+     */
+    public static boolean isHash(String value) {
+        if (value == null || value.length() != HASH_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            char c = value.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android version ships SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder hex = new StringBuilder(HASH_LENGTH);
+        for (byte b : digest) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    // Writes an encoded image to the store's output stream
+    private interface Source {
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
@@ -1,48 +1,433 @@
 package com.example.myair;
 
+import android.content.ContentResolver;
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.media.ExifInterface;
+import android.net.Uri;
 import android.util.Base64;
+import android.util.Base64InputStream;
+import android.util.Base64OutputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 public class ImageUtils {
+    static final int STREAM_BUFFER_SIZE = 8192;
+    // JPEG quality for images encoded without a byte budget
+    static final int UPLOAD_QUALITY = 80;
+    // No line breaks: the text is shorter and its length is known up front
+    private static final int BASE64_FLAGS = Base64.NO_WRAP;
 
     /**
      * Decode a Base64 string to a Bitmap
      * @param base64String The Base64 encoded image string
      * @return Bitmap or null if decoding fails
      */
-    public static Bitmap decodeBase64(String base64String) {
-        if (base64String == null || base64String.isEmpty()) {
+    public static Bitmap decodeBase64(CharSequence base64String) {
+        if (base64String == null || base64String.length() == 0) {
+            return null;
+        }
+
+        // Decoded while BitmapFactory reads, the image bytes are never copied out
+        try (InputStream in = openBase64(base64String)) {
+            return BitmapFactory.decodeStream(in);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Decode a Base64 string to a Bitmap no larger than needed for the target size
+     * @param base64String The Base64 encoded image string
+     * @param reqWidth Width the image will be displayed at, in pixels
+     * @param reqHeight Height the image will be displayed at, in pixels
+     * @return Bitmap or null if decoding fails
+     */
+    public static Bitmap decodeSampled(CharSequence base64String, int reqWidth, int reqHeight) {
+        return decodeSampled(base64String, reqWidth, reqHeight, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Decode a Base64 string to a Bitmap no larger than needed for the target size
+     * @param base64String The Base64 encoded image string
+     * @param reqWidth Width the image will be displayed at, in pixels
+     * @param reqHeight Height the image will be displayed at, in pixels
+     * @param config Pixel format, e.g. RGB_565 to halve the memory of list thumbnails
+     * @return Bitmap or null if decoding fails
+     */
+    public static Bitmap decodeSampled(CharSequence base64String, int reqWidth, int reqHeight,
+                                       Bitmap.Config config) {
+        if (base64String == null || base64String.length() == 0) {
             return null;
         }
 
         try {
-            byte[] decodedBytes = Base64.decode(base64String, Base64.DEFAULT);
-            return BitmapFactory.decodeByteArray(decodedBytes, 0, decodedBytes.length);
-        } catch (Exception e) {
+            // First pass only reads the dimensions. Each pass decodes the text
+            // again instead of keeping the decoded bytes around
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            try (InputStream in = openBase64(base64String)) {
+                BitmapFactory.decodeStream(in, null, options);
+            }
+
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                    reqWidth, reqHeight);
+            options.inPreferredConfig = config;
+            options.inJustDecodeBounds = false;
+            try (InputStream in = openBase64(base64String)) {
+                return BitmapFactory.decodeStream(in, null, options);
+            }
+        } catch (IOException | RuntimeException e) {
             e.printStackTrace();
             return null;
         }
     }
 
     /**
-     * Encode a Bitmap to a Base64 string
-     * @param bitmap The bitmap to encode
-     * @return Base64 encoded string or null if encoding fails
+     * Decode an image file to a Bitmap no larger than needed for the target size
+     * @param file Encoded image, e.g. from ImageStore
+     * @return Bitmap or null if decoding fails
      */
-    public static String encodeBase64(Bitmap bitmap) {
+    public static Bitmap decodeSampled(File file, int reqWidth, int reqHeight, Bitmap.Config config) {
+        return decodeSampled(file, reqWidth, reqHeight, config, null);
+    }
+
+    /**
+     * Decode an image file to a Bitmap no larger than needed for the target size,
+     * reusing the memory of a pooled bitmap when one is large enough
+     * @param file Encoded image, e.g. from ImageStore
+     * @param pool Bitmaps to decode into, or null to always allocate
+     * @return Bitmap or null if decoding fails
+     */
+    public static Bitmap decodeSampled(File file, int reqWidth, int reqHeight, Bitmap.Config config,
+                                       BitmapPool pool) {
+        if (file == null || !file.exists()) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                reqWidth, reqHeight);
+        options.inPreferredConfig = config;
+        options.inJustDecodeBounds = false;
+        if (pool != null) {
+            // Sampling rounds the size up at most, so this bitmap is large enough
+            int sample = options.inSampleSize;
+            options.inMutable = true;
+            options.inBitmap = pool.get((options.outWidth + sample - 1) / sample,
+                    (options.outHeight + sample - 1) / sample, config);
+        }
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        if (bitmap == null && options.inBitmap != null) {
+            // decodeFile swallows the error when the image does not fit the
+            // reused bitmap, e.g. a PNG with alpha decoded as ARGB_8888
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Decode an image from ImageStore for display at the given size. The
+     * result is scaled down to the requested size and kept in ThumbnailCache,
+     * so later calls, including after a restart, skip the JPEG decode.
+     * Callers keep their own memory cache on top of this.
+     * @param imageHash ImageStore hash of the image
+     * @return Bitmap or null if the image is missing or cannot be decoded
+     */
+    public static Bitmap decodeCached(Context context, String imageHash, int reqWidth, int reqHeight,
+                                      Bitmap.Config config) {
+        return decodeCached(context, imageHash, reqWidth, reqHeight, config, null);
+    }
+
+    /**
+     * Like {@link #decodeCached(Context, String, int, int, Bitmap.Config)}, but
+     * decodes into bitmaps taken from the pool and puts the intermediate
+     * decode back into it
+     * @param pool Bitmaps to decode into, or null to always allocate
+     */
+    public static Bitmap decodeCached(Context context, String imageHash, int reqWidth, int reqHeight,
+                                      Bitmap.Config config, BitmapPool pool) {
+        ThumbnailCache cache = ThumbnailCache.getInstance(context);
+        Bitmap bitmap = cache.get(imageHash, reqWidth, reqHeight, config, pool);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        File file = ImageStore.getInstance(context).getFile(imageHash);
+        bitmap = decodeSampled(file, reqWidth, reqHeight, config, pool);
         if (bitmap == null) {
             return null;
         }
+        // inSampleSize only halves, so the decode can be up to twice the size shown
+        float scale = Math.max((float) reqWidth / bitmap.getWidth(), (float) reqHeight / bitmap.getHeight());
+        if (scale < 1) {
+            bitmap = scale(bitmap, Math.round(bitmap.getWidth() * scale),
+                    Math.round(bitmap.getHeight() * scale), config, pool);
+        }
+        cache.put(imageHash, reqWidth, reqHeight, config, bitmap);
+        return bitmap;
+    }
+
+    // Scaled copy of the source. With a pool, the copy is drawn into a pooled
+    // bitmap and the source goes back to the pool
+    private static Bitmap scale(Bitmap source, int width, int height, Bitmap.Config config,
+                                BitmapPool pool) {
+        if (pool == null) {
+            return Bitmap.createScaledBitmap(source, width, height, true);
+        }
+        Bitmap target = pool.get(width, height, config);
+        if (target == null) {
+            target = Bitmap.createBitmap(width, height, config);
+        } else {
+            // Left over pixels would show through a transparent source
+            target.eraseColor(0);
+        }
+        new Canvas(target).drawBitmap(source, null, new Rect(0, 0, width, height),
+                new Paint(Paint.FILTER_BITMAP_FLAG));
+        pool.put(source);
+        return target;
+    }
 
+    /**
+     * Decode an image picked from a content Uri without loading it at full
+     * resolution, turned upright according to its EXIF orientation
+     * @return Bitmap or null if decoding fails
+     */
+    public static Bitmap decodeSampled(ContentResolver resolver, Uri uri, int reqWidth, int reqHeight) {
         try {
-            java.io.ByteArrayOutputStream byteArrayOutputStream = new java.io.ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 80, byteArrayOutputStream);
-            byte[] byteArray = byteArrayOutputStream.toByteArray();
-            return Base64.encodeToString(byteArray, Base64.DEFAULT);
-        } catch (Exception e) {
+            int orientation = readOrientation(resolver, uri);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            try (InputStream in = resolver.openInputStream(uri)) {
+                BitmapFactory.decodeStream(in, null, options);
+            }
+
+            // Camera photos are often stored sideways, their sides swap once upright
+            boolean swapsSides = swapsSides(orientation);
+            options.inSampleSize = calculateInSampleSize(
+                    swapsSides ? options.outHeight : options.outWidth,
+                    swapsSides ? options.outWidth : options.outHeight, reqWidth, reqHeight);
+            options.inJustDecodeBounds = false;
+            Bitmap bitmap;
+            try (InputStream in = resolver.openInputStream(uri)) {
+                bitmap = BitmapFactory.decodeStream(in, null, options);
+            }
+            return bitmap != null ? applyOrientation(bitmap, orientation) : null;
+        } catch (IOException | RuntimeException e) {
             e.printStackTrace();
             return null;
         }
     }
+
+    /**
+     * EXIF orientation of the image, ORIENTATION_NORMAL if it has none or it
+     * cannot be read
+     */
+    static int readOrientation(ContentResolver resolver, Uri uri) {
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) {
+                return ExifInterface.ORIENTATION_NORMAL;
+            }
+            return new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException | RuntimeException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    static boolean swapsSides(int orientation) {
+        return orientation == ExifInterface.ORIENTATION_ROTATE_90
+                || orientation == ExifInterface.ORIENTATION_ROTATE_270
+                || orientation == ExifInterface.ORIENTATION_TRANSPOSE
+                || orientation == ExifInterface.ORIENTATION_TRANSVERSE;
+    }
+
+    /**
+     * The bitmap turned upright for an EXIF orientation, or the bitmap itself
+     * if it already is. A transformed copy replaces the bitmap, which is recycled.
+     */
+    static Bitmap applyOrientation(Bitmap bitmap, int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                return bitmap;
+        }
+        Bitmap upright = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (upright != bitmap) {
+            bitmap.recycle();
+        }
+        return upright;
+    }
+
+    /**
+     * Largest power-of-two sample size that keeps both sides at or above the
+     * requested size
+     */
+    static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return inSampleSize;
+        }
+
+        if (height > reqHeight || width > reqWidth) {
+            int halfHeight = height / 2;
+            int halfWidth = width / 2;
+            while ((halfHeight / inSampleSize) >= reqHeight && (halfWidth / inSampleSize) >= reqWidth) {
+                inSampleSize *= 2;
+            }
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Memory a decoded bitmap takes for the given source size and sample size
+     */
+    static long estimateDecodedBytes(int width, int height, int inSampleSize, int bytesPerPixel) {
+        long sampledWidth = (width + inSampleSize - 1) / inSampleSize;
+        long sampledHeight = (height + inSampleSize - 1) / inSampleSize;
+        return sampledWidth * sampledHeight * bytesPerPixel;
+    }
+
+    /**
+     * Square, center-cropped copy of the bitmap for list avatars
+     * @param bitmap Source image, left untouched
+     * @param size Side of the thumbnail in pixels
+     */
+    public static Bitmap createThumbnail(Bitmap bitmap, int size) {
+        int side = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        int x = (bitmap.getWidth() - side) / 2;
+        int y = (bitmap.getHeight() - side) / 2;
+        Bitmap square = Bitmap.createBitmap(bitmap, x, y, side, side);
+        int scaled = Math.min(size, side);
+        return Bitmap.createScaledBitmap(square, scaled, scaled, true);
+    }
+
+    /**
+     * Encode a Bitmap to a Base64 string as a profile image
+     * @param bitmap The bitmap to encode
+     * @return Base64 encoded string or null if encoding fails
+     */
+    public static String encodeBase64(Bitmap bitmap) {
+        return encodeBase64(bitmap, ImageEncoder.PROFILE_IMAGE);
+    }
+
+    /**
+     * Encode a Bitmap to a Base64 string, sized and compressed by the encoder.
+     * Not for the main thread, the encoder compresses several times.
+     * @return Base64 encoded string or null if encoding fails
+     */
+    public static String encodeBase64(Bitmap bitmap, ImageEncoder encoder) {
+        if (bitmap == null) {
+            return null;
+        }
+        byte[] image = encoder.encode(bitmap);
+        return image != null ? Base64.encodeToString(image, BASE64_FLAGS) : null;
+    }
+
+    /**
+     * Compress a bitmap and write it to the stream as Base64, e.g. into a
+     * file or a request body. The stream is left open.
+     * @return false if the bitmap could not be compressed
+     */
+    public static boolean writeBase64(Bitmap bitmap, Bitmap.CompressFormat format, int quality,
+                                      OutputStream out) throws IOException {
+        try (OutputStream base64 = new Base64OutputStream(out, BASE64_FLAGS | Base64.NO_CLOSE)) {
+            return bitmap.compress(format, quality, base64);
+        }
+    }
+
+    /**
+     * Copy encoded image bytes to the stream as Base64. The output stream is left open.
+     */
+    public static void writeBase64(InputStream in, OutputStream out) throws IOException {
+        try (OutputStream base64 = new Base64OutputStream(out, BASE64_FLAGS | Base64.NO_CLOSE)) {
+            copy(in, base64);
+        }
+    }
+
+    /**
+     * Stream of the bytes a Base64 string encodes, decoded as they are read.
+     * Reading fails with an IOException if the text is not valid Base64.
+     */
+    public static InputStream openBase64(CharSequence base64String) {
+        return new Base64InputStream(new AsciiInputStream(base64String), Base64.DEFAULT);
+    }
+
+    static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    // Reads the characters of a Base64 string as bytes, without copying the string
+    private static class AsciiInputStream extends InputStream {
+        private final CharSequence chars;
+        private int position;
+
+        AsciiInputStream(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int read() {
+            return position < chars.length() ? chars.charAt(position++) & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            int count = Math.min(length, chars.length() - position);
+            if (count <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) chars.charAt(position++);
+            }
+            return count;
+        }
+    }
 }
@@ -0,0 +1,109 @@
+package com.example.myair;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * One create, update or delete sent through a batch endpoint, see
+ * {@link NetworkService#submitBatch}. The ref is echoed back in the matching
+ * {@link Result} so callers can pair results with what they sent.
+ */
+public class Mutation {
+    private final long ref;
+    private final String entity;
+    private final String op;
+    private final int id;
+    private final JSONObject data;
+
+    /**
+     * @param entity OutboxEntry.ENTITY_PASSENGER or ENTITY_BOOKING
+     * @param op     OutboxEntry.OP_CREATE, OP_UPDATE or OP_DELETE
+     * @param id     server id of the row; ignored for creates
+     * @param data   fields to write; null for deletes
+     */
+    public Mutation(long ref, String entity, String op, int id, JSONObject data) {
+        this.ref = ref;
+        this.entity = entity;
+        this.op = op;
+        this.id = id;
+        this.data = data;
+    }
+
+    public long getRef() {
+        return ref;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public JSONObject getData() {
+        return data;
+    }
+
+    // { "ref": ..., "op": ..., "id": ..., "data": { ... } } as the batch routes expect
+    JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("ref", ref);
+        json.put("op", op);
+        if (!OutboxEntry.OP_CREATE.equals(op)) {
+            json.put("id", id);
+        }
+        if (data != null) {
+            json.put("data", data);
+        }
+        return json;
+    }
+
+    /**
+     * Outcome of one mutation: the HTTP status and body the single-item
+     * endpoint would have returned for it.
+     */
+    public static class Result {
+        private final long ref;
+        private final int status;
+        private final JSONObject data;
+        private final String message;
+
+        public Result(long ref, int status, JSONObject data, String message) {
+            this.ref = ref;
+            this.status = status;
+            this.data = data;
+            this.message = message;
+        }
+
+        static Result fromJson(JSONObject json) {
+            return new Result(json.optLong("ref", -1), json.optInt("status"),
+                    json.optJSONObject("data"), json.optString("message", null));
+        }
+
+        public long getRef() {
+            return ref;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        // The created or updated row, null for deletes and failures
+        public JSONObject getData() {
+            return data;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
+}
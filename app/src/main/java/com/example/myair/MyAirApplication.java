@@ -0,0 +1,25 @@
+package com.example.myair;
+
+import android.app.Application;
+
+public class MyAirApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Create the shared database helper; its connection stays open for the
+        // whole process instead of being reopened per query
+        DatabaseHelper.getInstance(this);
+        // Send local writes still queued from earlier sessions
+        OutboxReplicator.getInstance(this).requestSync();
+    }
+
+    @Override
+    public void onTerminate() {
+        // Owner of the long-lived connection: it is only closed here, when the
+        // process is going away. On devices the OS may simply kill the process,
+        // which SQLite handles safely.
+        DatabaseHelper.closeInstance();
+        super.onTerminate();
+    }
+}
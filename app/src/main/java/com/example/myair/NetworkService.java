@@ -3,11 +3,12 @@ package com.example.myair;
 import android.content.Context;
 import android.util.Log;
 
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
 import com.android.volley.Response;
 import com.android.volley.VolleyError;
-import com.android.volley.toolbox.JsonArrayRequest;
 import com.android.volley.toolbox.JsonObjectRequest;
 import com.android.volley.toolbox.Volley;
 
@@ -15,11 +16,23 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
 public class NetworkService {
     private static final String TAG = "NetworkService";
+    // A full batch does up to 100 writes on the server, more than Volley's 2.5s default
+    private static final int BATCH_TIMEOUT_MS = 30_000;
     private static NetworkService instance;
     private RequestQueue requestQueue;
     private Context context;
+    // Callbacks waiting on each GET in flight, keyed by requestKey
+    private final Map<String, List<Waiter>> inFlight = new HashMap<>();
 
     private NetworkService(Context context) {
         this.context = context.getApplicationContext();
@@ -60,7 +73,7 @@ public class NetworkService {
                 },
                 error -> {
                     Log.e(TAG, "Error creating passenger: " + error.getMessage());
-                    callback.onError(getErrorMessage(error));
+                    callback.onError(getErrorMessage(error), getStatusCode(error));
                 }
             );
             
@@ -75,6 +88,12 @@ public class NetworkService {
      * Get all passengers
      */
     public void getAllPassengers(final NetworkCallback<JSONArray> callback) {
+        String key = requestKey(ApiConfig.GET_ALL_PASSENGERS, null);
+        NetworkCallback<JSONArray> shared = share(key, null, callback);
+        if (shared == null) {
+            return;
+        }
+
         // Server returns: { "success": true, "count": X, "data": [...] }
         // So we need JsonObjectRequest, not JsonArrayRequest
         JsonObjectRequest request = new JsonObjectRequest(
@@ -87,23 +106,73 @@ public class NetworkService {
                     if (response.has("data")) {
                         JSONArray passengers = response.getJSONArray("data");
                         Log.d(TAG, "Passengers retrieved: " + passengers.length());
-                        callback.onSuccess(passengers);
+                        shared.onSuccess(passengers);
                     } else {
                         // Fallback: if no "data" field, return empty array
                         Log.w(TAG, "No 'data' field in response");
-                        callback.onSuccess(new JSONArray());
+                        shared.onSuccess(new JSONArray());
                     }
                 } catch (JSONException e) {
                     Log.e(TAG, "Error parsing passengers: " + e.getMessage());
-                    callback.onError("Error parsing server response: " + e.getMessage());
+                    shared.onError("Error parsing server response: " + e.getMessage());
                 }
             },
             error -> {
                 Log.e(TAG, "Error getting passengers: " + error.getMessage());
-                callback.onError(getErrorMessage(error));
+                shared.onError(getErrorMessage(error), getStatusCode(error));
             }
         );
-        
+        request.setTag(key);
+
+        requestQueue.add(request);
+    }
+
+    /**
+     * Get passengers changed since the given sync token. With a null token the
+     * full passenger list is returned as a snapshot. With the ETag of the last
+     * applied response, an unchanged list ends in onNotModified instead.
+     * Requests made with a tag can be dropped with {@link #cancelAll(Object)}.
+     */
+    public void getPassengerChanges(String syncToken, String etag, Object tag,
+                                    final NetworkCallback<PassengerChanges> callback) {
+        String url;
+        try {
+            url = syncToken == null
+                    ? ApiConfig.GET_ALL_PASSENGERS
+                    : ApiConfig.GET_PASSENGER_CHANGES + URLEncoder.encode(syncToken, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            callback.onError("Error preparing request: " + e.getMessage());
+            return;
+        }
+        String key = requestKey(url, etag);
+        NetworkCallback<PassengerChanges> shared = share(key, tag, callback);
+        if (shared == null) {
+            return;
+        }
+
+        PassengerListRequest request = new PassengerListRequest(
+            url,
+            syncToken,
+            etag,
+            changes -> {
+                if (changes == null) {
+                    Log.d(TAG, "Passenger list not modified");
+                    shared.onNotModified();
+                    return;
+                }
+                Log.d(TAG, "Passenger changes retrieved: " + changes.getPassengers().size()
+                        + " changed, " + changes.getDeletedIds().size() + " deleted");
+                shared.onSuccess(changes);
+            },
+            error -> {
+                Log.e(TAG, "Error getting passenger changes: " + error.getMessage());
+                shared.onError(getErrorMessage(error), getStatusCode(error));
+            }
+        );
+        // The payload is large and already reduced to deltas, no need for Volley's disk cache
+        request.setShouldCache(false);
+        request.setTag(key);
+
         requestQueue.add(request);
     }
 
@@ -111,20 +180,61 @@ public class NetworkService {
      * Get single passenger by ID
      */
     public void getPassenger(int id, final NetworkCallback<JSONObject> callback) {
+        String key = requestKey(ApiConfig.GET_PASSENGER + id, null);
+        NetworkCallback<JSONObject> shared = share(key, null, callback);
+        if (shared == null) {
+            return;
+        }
+
         JsonObjectRequest request = new JsonObjectRequest(
             Request.Method.GET,
             ApiConfig.GET_PASSENGER + id,
             null,
             response -> {
                 Log.d(TAG, "Passenger retrieved: " + response.toString());
-                callback.onSuccess(response);
+                shared.onSuccess(response);
             },
             error -> {
                 Log.e(TAG, "Error getting passenger: " + error.getMessage());
-                callback.onError(getErrorMessage(error));
+                shared.onError(getErrorMessage(error), getStatusCode(error));
             }
         );
-        
+        request.setTag(key);
+
+        requestQueue.add(request);
+    }
+
+    /**
+     * Get the full profile image of a passenger as encoded image bytes. List
+     * rows only carry a thumbnail, this is fetched when the full image is shown.
+     */
+    public void getProfileImage(int id, final NetworkCallback<byte[]> callback) {
+        String url = ApiConfig.GET_PASSENGER + id + ApiConfig.PROFILE_IMAGE_PATH;
+        String key = requestKey(url, null);
+        NetworkCallback<byte[]> shared = share(key, null, callback);
+        if (shared == null) {
+            return;
+        }
+
+        Request<byte[]> request = new Request<byte[]>(Request.Method.GET, url, error -> {
+            Log.e(TAG, "Error getting profile image: " + error.getMessage());
+            shared.onError(getErrorMessage(error), getStatusCode(error));
+        }) {
+            @Override
+            protected Response<byte[]> parseNetworkResponse(NetworkResponse response) {
+                return Response.success(response.data, null);
+            }
+
+            @Override
+            protected void deliverResponse(byte[] response) {
+                Log.d(TAG, "Profile image retrieved: " + response.length + " bytes");
+                shared.onSuccess(response);
+            }
+        };
+        // Kept in ImageStore once downloaded, Volley's disk cache would only duplicate it
+        request.setShouldCache(false);
+        request.setTag(key);
+
         requestQueue.add(request);
     }
 
@@ -146,7 +256,7 @@ public class NetworkService {
                 },
                 error -> {
                     Log.e(TAG, "Error updating passenger: " + error.getMessage());
-                    callback.onError(getErrorMessage(error));
+                    callback.onError(getErrorMessage(error), getStatusCode(error));
                 }
             );
             
@@ -171,7 +281,7 @@ public class NetworkService {
             },
             error -> {
                 Log.e(TAG, "Error deleting passenger: " + error.getMessage());
-                callback.onError(getErrorMessage(error));
+                callback.onError(getErrorMessage(error), getStatusCode(error));
             }
         );
         
@@ -204,7 +314,7 @@ public class NetworkService {
                 },
                 error -> {
                     Log.e(TAG, "Error creating booking: " + error.getMessage());
-                    callback.onError(getErrorMessage(error));
+                    callback.onError(getErrorMessage(error), getStatusCode(error));
                 }
             );
             
@@ -216,24 +326,30 @@ public class NetworkService {
     }
 
     /**
-     * Get bookings by passenger ID
+     * Get bookings by passenger ID. Revalidated with the ETag of the last
+     * response, so an unchanged list is served from memory after a 304.
      */
     public void getBookingsByPassenger(int passengerId, 
                                       final NetworkCallback<JSONArray> callback) {
-        JsonArrayRequest request = new JsonArrayRequest(
-            Request.Method.GET,
+        String key = requestKey(ApiConfig.GET_BOOKINGS_BY_PASSENGER + passengerId, null);
+        NetworkCallback<JSONArray> shared = share(key, null, callback);
+        if (shared == null) {
+            return;
+        }
+
+        ConditionalListRequest request = new ConditionalListRequest(
             ApiConfig.GET_BOOKINGS_BY_PASSENGER + passengerId,
-            null,
             response -> {
                 Log.d(TAG, "Bookings retrieved: " + response.length());
-                callback.onSuccess(response);
+                shared.onSuccess(response);
             },
             error -> {
                 Log.e(TAG, "Error getting bookings: " + error.getMessage());
-                callback.onError(getErrorMessage(error));
+                shared.onError(getErrorMessage(error), getStatusCode(error));
             }
         );
-        
+        request.setTag(key);
+
         requestQueue.add(request);
     }
 
@@ -251,19 +367,182 @@ public class NetworkService {
             },
             error -> {
                 Log.e(TAG, "Error deleting booking: " + error.getMessage());
-                callback.onError(getErrorMessage(error));
+                callback.onError(getErrorMessage(error), getStatusCode(error));
             }
         );
         
         requestQueue.add(request);
     }
 
+    // ==================== BATCH OPERATIONS ====================
+
+    /**
+     * Apply many creates, updates and deletes in one request. All mutations
+     * must be for the same entity. The callback gets one result per mutation,
+     * in order; onError means the request as a whole failed and none of the
+     * results are known.
+     */
+    public void submitBatch(List<Mutation> mutations,
+                            final NetworkCallback<List<Mutation.Result>> callback) {
+        String entity = mutations.get(0).getEntity();
+        JSONObject jsonBody = new JSONObject();
+        try {
+            JSONArray operations = new JSONArray();
+            for (Mutation mutation : mutations) {
+                if (!entity.equals(mutation.getEntity())) {
+                    throw new IllegalArgumentException("Batch mixes " + entity + " and " + mutation.getEntity());
+                }
+                operations.put(mutation.toJson());
+            }
+            jsonBody.put("operations", operations);
+        } catch (JSONException e) {
+            Log.e(TAG, "JSON error: " + e.getMessage());
+            callback.onError("Error preparing data: " + e.getMessage());
+            return;
+        }
+
+        JsonObjectRequest request = new JsonObjectRequest(
+            Request.Method.POST,
+            OutboxEntry.ENTITY_PASSENGER.equals(entity) ? ApiConfig.PASSENGER_BATCH : ApiConfig.BOOKING_BATCH,
+            jsonBody,
+            response -> {
+                JSONArray items = response.optJSONArray("results");
+                List<Mutation.Result> results = new ArrayList<>();
+                for (int i = 0; items != null && i < items.length(); i++) {
+                    JSONObject item = items.optJSONObject(i);
+                    if (item != null) {
+                        results.add(Mutation.Result.fromJson(item));
+                    }
+                }
+                Log.d(TAG, "Batch of " + mutations.size() + " " + entity + " mutations applied");
+                callback.onSuccess(results);
+            },
+            error -> {
+                Log.e(TAG, "Error submitting batch: " + error.getMessage());
+                callback.onError(getErrorMessage(error), getStatusCode(error));
+            }
+        );
+        // No automatic retry: a timed-out batch may still have been applied
+        request.setRetryPolicy(new DefaultRetryPolicy(BATCH_TIMEOUT_MS, 0,
+                DefaultRetryPolicy.DEFAULT_BACKOFF_MULT));
+
+        requestQueue.add(request);
+    }
+
+    // ==================== IN-FLIGHT REQUESTS ====================
+
+    /**
+     * Drop the callbacks of requests made with this tag, e.g. when the screen
+     * that made them goes away. A shared request is cancelled once nobody is
+     * waiting on it any more.
+     */
+    public void cancelAll(Object tag) {
+        if (tag == null) {
+            return;
+        }
+        synchronized (inFlight) {
+            Iterator<Map.Entry<String, List<Waiter>>> entries = inFlight.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, List<Waiter>> entry = entries.next();
+                entry.getValue().removeIf(waiter -> waiter.tag == tag);
+                if (entry.getValue().isEmpty()) {
+                    entries.remove();
+                    // Requests are tagged with their key, see share
+                    requestQueue.cancelAll(entry.getKey());
+                }
+            }
+        }
+    }
+
+    // Identifies identical GETs; conditional requests only match the same ETag,
+    // since a 304 means nothing to a caller that did not send it
+    private static String requestKey(String url, String etag) {
+        String key = "GET " + url;
+        return etag != null ? key + " If-None-Match: " + etag : key;
+    }
+
+    /**
+     * Register the callback for the GET with this key. Returns null if an
+     * identical request is already in flight, which the callback now waits on;
+     * otherwise a callback for the new request that delivers to every caller
+     * that joins it before it completes.
+     */
+    private <T> NetworkCallback<T> share(String key, Object tag, NetworkCallback<T> callback) {
+        synchronized (inFlight) {
+            List<Waiter> waiters = inFlight.get(key);
+            boolean joined = waiters != null;
+            if (!joined) {
+                waiters = new ArrayList<>();
+                inFlight.put(key, waiters);
+            }
+            waiters.add(new Waiter(tag, callback));
+            if (joined) {
+                Log.d(TAG, "Joined request in flight: " + key);
+                return null;
+            }
+        }
+
+        return new NetworkCallback<T>() {
+            @Override
+            public void onSuccess(T response) {
+                for (NetworkCallback<T> waiting : finish()) {
+                    waiting.onSuccess(response);
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                onError(error, 0);
+            }
+
+            @Override
+            public void onError(String error, int statusCode) {
+                for (NetworkCallback<T> waiting : finish()) {
+                    waiting.onError(error, statusCode);
+                }
+            }
+
+            @Override
+            public void onNotModified() {
+                for (NetworkCallback<T> waiting : finish()) {
+                    waiting.onNotModified();
+                }
+            }
+
+            // Everyone waiting on the request; later callers start a new one
+            @SuppressWarnings("unchecked")
+            private List<NetworkCallback<T>> finish() {
+                List<Waiter> waiters;
+                synchronized (inFlight) {
+                    waiters = inFlight.remove(key);
+                }
+                List<NetworkCallback<T>> callbacks = new ArrayList<>();
+                if (waiters != null) {
+                    for (Waiter waiter : waiters) {
+                        callbacks.add((NetworkCallback<T>) waiter.callback);
+                    }
+                }
+                return callbacks;
+            }
+        };
+    }
+
+    private static class Waiter {
+        final Object tag;
+        final NetworkCallback<?> callback;
+
+        Waiter(Object tag, NetworkCallback<?> callback) {
+            this.tag = tag;
+            this.callback = callback;
+        }
+    }
+
     // ==================== HELPER METHODS ====================
 
     /**
      * Convert Passenger object to JSON
      */
-    private JSONObject passengerToJson(Passenger passenger) throws JSONException {
+    JSONObject passengerToJson(Passenger passenger) throws JSONException {
         JSONObject json = new JSONObject();
         json.put("full_name", passenger.getFullName());
         json.put("email", passenger.getEmail());
@@ -271,7 +550,31 @@ public class NetworkService {
         json.put("date_of_birth", passenger.getDateOfBirth());
         json.put("membership_level", passenger.getMembershipLevel());
         json.put("is_active", passenger.isActive());
-        json.put("profile_image", passenger.getProfileImagePath());
+        String profileImage = passenger.getProfileImagePath();
+        if ((profileImage == null || profileImage.isEmpty()) && passenger.getProfileImageHash() != null) {
+            // Passengers read from SQLite only carry the ImageStore hash
+            profileImage = ImageStore.getInstance(context).readBase64(passenger.getProfileImageHash());
+        }
+        // Left out when only the thumbnail is here, so the server keeps its full image
+        json.put("profile_image", profileImage);
+        String thumbnail = passenger.getThumbnail();
+        if ((thumbnail == null || thumbnail.isEmpty()) && passenger.getThumbnailHash() != null) {
+            thumbnail = ImageStore.getInstance(context).readBase64(passenger.getThumbnailHash());
+        }
+        json.put("profile_thumbnail", thumbnail);
+        return json;
+    }
+
+    /**
+     * Convert FlightBooking object to JSON
+     */
+    JSONObject bookingToJson(FlightBooking booking) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("passenger_id", booking.getPassengerId());
+        json.put("flight_number", booking.getFlightNumber());
+        json.put("booking_date", booking.getBookingDate());
+        json.put("seat_number", booking.getSeatNumber());
+        json.put("status", booking.getStatus());
         return json;
     }
 
@@ -288,6 +591,13 @@ public class NetworkService {
         }
     }
 
+    /**
+     * HTTP status of a failed request, or 0 if no response arrived
+     */
+    private int getStatusCode(VolleyError error) {
+        return error.networkResponse != null ? error.networkResponse.statusCode : 0;
+    }
+
     // ==================== CALLBACK INTERFACE ====================
 
     /**
@@ -296,5 +606,20 @@ public class NetworkService {
     public interface NetworkCallback<T> {
         void onSuccess(T response);
         void onError(String error);
+
+        /**
+         * Failure with the HTTP status, 0 if no response arrived. Override when
+         * the status matters, e.g. to tell a rejected request from an outage.
+         */
+        default void onError(String error, int statusCode) {
+            onError(error);
+        }
+
+        /**
+         * A conditional request found the data unchanged, so what the caller
+         * already has is current. Nothing to do by default.
+         */
+        default void onNotModified() {
+        }
     }
 }
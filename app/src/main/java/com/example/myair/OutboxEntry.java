@@ -0,0 +1,62 @@
+package com.example.myair;
+
+/**
+ * A local write waiting to be replicated to the server. There is at most one
+ * entry per row: later edits to the same row are folded into it, and the row's
+ * current contents are read when the entry is sent.
+ */
+public class OutboxEntry {
+    public static final String ENTITY_PASSENGER = "passenger";
+    public static final String ENTITY_BOOKING = "booking";
+
+    public static final String OP_CREATE = "create";
+    public static final String OP_UPDATE = "update";
+    public static final String OP_DELETE = "delete";
+
+    private long id;
+    private String entity;
+    private int entityId;
+    private String op;
+    private int revision;
+    private int attempts;
+
+    public OutboxEntry(long id, String entity, int entityId, String op, int revision, int attempts) {
+        this.id = id;
+        this.entity = entity;
+        this.entityId = entityId;
+        this.op = op;
+        this.revision = revision;
+        this.attempts = attempts;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    // Bumped whenever another edit is folded into the entry
+    public int getRevision() {
+        return revision;
+    }
+
+    // Sends started so far, including the one in flight
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return op + " " + entity + " " + entityId;
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.myair;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Replicates local writes to the server. DatabaseHelper records every user
+ * edit in the outbox table in the same transaction as the edit itself; this
+ * class drains the outbox oldest first, many entries per request through the
+ * batch endpoints, and retries failed sends with exponential backoff. Entries
+ * survive restarts and repeated edits to a row share one entry, so a flaky
+ * network neither loses writes nor replays each keystroke.
+ */
+public class OutboxReplicator {
+    private static final String TAG = "OutboxReplicator";
+    // At most the server's limit of operations per batch
+    private static final int BATCH_SIZE = 100;
+    // Keeps a batch well under the server's 1mb JSON body limit
+    private static final int MAX_BATCH_BYTES = 768 * 1024;
+    private static final long BASE_BACKOFF_MS = 2_000;
+    private static final long MAX_BACKOFF_MS = 5 * 60_000;
+
+    private static OutboxReplicator instance;
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    // All outbox work runs here, one batch at a time
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable retryRunnable = this::requestSync;
+    private final Random random = new Random();
+    private final List<OnPassengersRemappedListener> remapListeners = new CopyOnWriteArrayList<>();
+    // Only touched on the executor
+    private boolean draining;
+
+    private OutboxReplicator(Context context) {
+        this.context = context;
+        dbHelper = DatabaseHelper.getInstance(context);
+        executor.execute(dbHelper::resetOutboxInFlight);
+        watchConnectivity();
+    }
+
+    public static synchronized OutboxReplicator getInstance(Context context) {
+        if (instance == null) {
+            instance = new OutboxReplicator(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Send whatever is due in the outbox. Safe to call often: calls while a
+     * batch is being sent are folded into that run.
+     */
+    public void requestSync() {
+        executor.execute(this::drain);
+    }
+
+    public void addOnPassengersRemappedListener(OnPassengersRemappedListener listener) {
+        remapListeners.add(listener);
+    }
+
+    public void removeOnPassengersRemappedListener(OnPassengersRemappedListener listener) {
+        remapListeners.remove(listener);
+    }
+
+    private void drain() {
+        if (draining) {
+            return;
+        }
+        List<OutboxEntry> due = dbHelper.getDueOutboxEntries(System.currentTimeMillis(), BATCH_SIZE);
+        if (due.isEmpty()) {
+            scheduleRetry();
+            return;
+        }
+
+        // Only the leading run of one entity goes out together, so a passenger
+        // exists on the server, under its server id, before any of its bookings
+        // are built and sent
+        List<OutboxEntry> run = new ArrayList<>();
+        List<Mutation> mutations = new ArrayList<>();
+        int bytes = 0;
+        for (OutboxEntry entry : due) {
+            if (!run.isEmpty() && !run.get(0).getEntity().equals(entry.getEntity())) {
+                break;
+            }
+            Mutation mutation = toMutation(entry);
+            if (mutation == null) {
+                // The row is gone locally, e.g. deleted before its create went out
+                dbHelper.dropOutboxEntry(entry);
+                continue;
+            }
+            int size = sizeOf(mutation);
+            if (!run.isEmpty() && bytes + size > MAX_BATCH_BYTES) {
+                break;
+            }
+            run.add(entry);
+            mutations.add(mutation);
+            bytes += size;
+        }
+        if (run.isEmpty()) {
+            drain(); // Everything due was dropped, look again
+            return;
+        }
+
+        draining = true;
+        for (OutboxEntry entry : run) {
+            dbHelper.markOutboxInFlight(entry);
+        }
+        NetworkService.getInstance(context).submitBatch(mutations,
+                new NetworkService.NetworkCallback<List<Mutation.Result>>() {
+            @Override
+            public void onSuccess(List<Mutation.Result> results) {
+                executor.execute(() -> finish(run, results));
+            }
+
+            @Override
+            public void onError(String error) {
+                onError(error, 0);
+            }
+
+            @Override
+            public void onError(String error, int statusCode) {
+                // Whatever went wrong, nothing tells us which items were applied:
+                // keep them all, in order, and retry later
+                executor.execute(() -> {
+                    long delay = deferAll(run, error);
+                    Log.w(TAG, "Sending " + run.size() + " entries failed, retrying in "
+                            + delay + " ms: " + error);
+                    draining = false;
+                    scheduleRetry();
+                });
+            }
+        });
+    }
+
+    private void finish(List<OutboxEntry> run, List<Mutation.Result> results) {
+        Map<Long, Mutation.Result> byRef = new HashMap<>();
+        for (Mutation.Result result : results) {
+            byRef.put(result.getRef(), result);
+        }
+
+        boolean deferred = false;
+        boolean remapped = false;
+        for (OutboxEntry entry : run) {
+            Mutation.Result result = byRef.get(entry.getId());
+            int status = result != null ? result.getStatus() : 0;
+            String message = result != null ? result.getMessage() : "No result for entry";
+            if (result != null && result.isSuccess()) {
+                int serverId = serverIdOf(entry, result.getData());
+                dbHelper.completeOutboxEntry(entry, serverId);
+                remapped |= OutboxEntry.ENTITY_PASSENGER.equals(entry.getEntity())
+                        && OutboxEntry.OP_CREATE.equals(entry.getOp()) && serverId != entry.getEntityId();
+            } else if (OutboxEntry.OP_DELETE.equals(entry.getOp()) && status == 404) {
+                // Already gone on the server
+                dbHelper.completeOutboxEntry(entry, entry.getEntityId());
+            } else if (isRejected(status)) {
+                Log.e(TAG, "Server rejected " + entry + ", dropping it: " + message);
+                dbHelper.dropOutboxEntry(entry);
+            } else {
+                long delay = backoffMs(entry.getAttempts() + 1, random);
+                Log.w(TAG, "Sending " + entry + " failed, retrying in " + delay + " ms: " + message);
+                dbHelper.deferOutboxEntry(entry, System.currentTimeMillis() + delay, message);
+                deferred = true;
+            }
+        }
+
+        if (remapped) {
+            mainHandler.post(() -> {
+                for (OnPassengersRemappedListener listener : remapListeners) {
+                    listener.onPassengersRemapped();
+                }
+            });
+        }
+
+        draining = false;
+        if (deferred) {
+            // The deferred entry now blocks everything behind it until it is due
+            scheduleRetry();
+        } else {
+            drain(); // Pick up writes made while this batch was in flight
+        }
+    }
+
+    private long deferAll(List<OutboxEntry> run, String error) {
+        long delay = backoffMs(run.get(0).getAttempts() + 1, random);
+        long nextAttemptAt = System.currentTimeMillis() + delay;
+        for (OutboxEntry entry : run) {
+            dbHelper.deferOutboxEntry(entry, nextAttemptAt, error);
+        }
+        return delay;
+    }
+
+    // Builds the mutation from the row as it is now; null if there is nothing to send
+    private Mutation toMutation(OutboxEntry entry) {
+        boolean passenger = OutboxEntry.ENTITY_PASSENGER.equals(entry.getEntity());
+
+        if (OutboxEntry.OP_DELETE.equals(entry.getOp())) {
+            if (!passenger) {
+                return null; // Bookings are not deleted from the app
+            }
+            return new Mutation(entry.getId(), entry.getEntity(), entry.getOp(), entry.getEntityId(), null);
+        }
+
+        NetworkService network = NetworkService.getInstance(context);
+        try {
+            if (passenger) {
+                Passenger row = dbHelper.getPassenger(entry.getEntityId());
+                if (row == null) {
+                    return null;
+                }
+                return new Mutation(entry.getId(), entry.getEntity(), entry.getOp(), entry.getEntityId(),
+                        network.passengerToJson(row));
+            }
+
+            FlightBooking booking = dbHelper.getBooking(entry.getEntityId());
+            if (booking == null || dbHelper.getPassenger(booking.getPassengerId()) == null) {
+                return null;
+            }
+            return new Mutation(entry.getId(), entry.getEntity(), entry.getOp(), entry.getEntityId(),
+                    network.bookingToJson(booking));
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not encode " + entry + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Rough request size of a mutation; profile images make passengers large
+    private static int sizeOf(Mutation mutation) {
+        JSONObject data = mutation.getData();
+        return data != null ? data.toString().length() : 0;
+    }
+
+    // Server id of a created row: the result's data is the row, { "id": ..., ... }
+    private static int serverIdOf(OutboxEntry entry, JSONObject data) {
+        return data != null ? data.optInt("id", entry.getEntityId()) : entry.getEntityId();
+    }
+
+    // 4xx means the request itself is bad and will fail the same way again,
+    // except for timeouts and rate limiting
+    static boolean isRejected(int statusCode) {
+        return statusCode >= 400 && statusCode < 500 && statusCode != 408 && statusCode != 429;
+    }
+
+    // Doubles per attempt up to MAX_BACKOFF_MS, with jitter so clients that
+    // failed together do not retry together
+    static long backoffMs(int attempts, Random random) {
+        long delay = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts - 1, 16));
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    private void scheduleRetry() {
+        long nextAttemptAt = dbHelper.getNextOutboxAttemptAt();
+        mainHandler.removeCallbacks(retryRunnable);
+        if (nextAttemptAt >= 0) {
+            long delay = Math.max(0, nextAttemptAt - System.currentTimeMillis());
+            mainHandler.postDelayed(retryRunnable, delay);
+        }
+    }
+
+    // Retry as soon as a network comes back instead of waiting out the backoff
+    private void watchConnectivity() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return;
+        }
+        connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                executor.execute(() -> {
+                    dbHelper.retryOutboxNow();
+                    drain();
+                });
+            }
+        });
+    }
+
+    /**
+     * Told on the main thread after locally created passengers moved to the
+     * ids the server assigned. Their old ids still resolve, but lists keyed
+     * by id should reload.
+     */
+    public interface OnPassengersRemappedListener {
+        void onPassengersRemapped();
+    }
+}
@@ -9,6 +9,11 @@ public class Passenger {
     private String membershipLevel;
     private boolean isActive;
     private String profileImagePath;
+    private String profileImageHash;
+    private String thumbnail;
+    private String thumbnailHash;
+    private String profileImageUrl;
+    private int bookingCount;
 
     // Constructor
     public Passenger() {
@@ -90,4 +95,49 @@ public class Passenger {
     public void setProfileImagePath(String profileImagePath) {
         this.profileImagePath = profileImagePath;
     }
+
+    // SHA-256 of the image in ImageStore, set for passengers read from SQLite
+    public String getProfileImageHash() {
+        return profileImageHash;
+    }
+
+    public void setProfileImageHash(String profileImageHash) {
+        this.profileImageHash = profileImageHash;
+    }
+
+    // Base64 avatar-sized copy of the profile image, as sent to and from the server
+    public String getThumbnail() {
+        return thumbnail;
+    }
+
+    public void setThumbnail(String thumbnail) {
+        this.thumbnail = thumbnail;
+    }
+
+    // SHA-256 of the thumbnail in ImageStore, set for passengers read from SQLite
+    public String getThumbnailHash() {
+        return thumbnailHash;
+    }
+
+    public void setThumbnailHash(String thumbnailHash) {
+        this.thumbnailHash = thumbnailHash;
+    }
+
+    // Server path of the full image, set for passengers read from the list endpoint
+    public String getProfileImageUrl() {
+        return profileImageUrl;
+    }
+
+    public void setProfileImageUrl(String profileImageUrl) {
+        this.profileImageUrl = profileImageUrl;
+    }
+
+    // Number of local bookings, read from the booking_count column
+    public int getBookingCount() {
+        return bookingCount;
+    }
+
+    public void setBookingCount(int bookingCount) {
+        this.bookingCount = bookingCount;
+    }
 }
@@ -8,14 +8,35 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
-
-public class PassengerAdapter extends RecyclerView.Adapter<PassengerAdapter.PassengerViewHolder> {
+import java.util.Objects;
+
+public class PassengerAdapter extends ListAdapter<Passenger, PassengerAdapter.PassengerViewHolder> {
+
+    // Passengers are the same row when their ids match, and need a rebind
+    // only when something shown in the row changed
+    private static final DiffUtil.ItemCallback<Passenger> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<Passenger>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull Passenger oldItem, @NonNull Passenger newItem) {
+                    return oldItem.getId() == newItem.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull Passenger oldItem, @NonNull Passenger newItem) {
+                    return Objects.equals(oldItem.getFullName(), newItem.getFullName())
+                            && Objects.equals(oldItem.getEmail(), newItem.getEmail())
+                            && Objects.equals(oldItem.getMembershipLevel(), newItem.getMembershipLevel())
+                            && Objects.equals(oldItem.getProfileImageHash(), newItem.getProfileImageHash())
+                            && Objects.equals(oldItem.getThumbnailHash(), newItem.getThumbnailHash())
+                            && oldItem.getBookingCount() == newItem.getBookingCount();
+                }
+            };
 
     private Context context;
-    private List<Passenger> passengerList;
     private OnPassengerClickListener listener;
 
     public interface OnPassengerClickListener {
@@ -23,10 +44,11 @@ public class PassengerAdapter extends RecyclerView.Adapter<PassengerAdapter.Pass
         void onDeleteClick(Passenger passenger);
     }
 
-    public PassengerAdapter(Context context, List<Passenger> passengerList, OnPassengerClickListener listener) {
+    public PassengerAdapter(Context context, OnPassengerClickListener listener) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.passengerList = passengerList;
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -38,23 +60,21 @@ public class PassengerAdapter extends RecyclerView.Adapter<PassengerAdapter.Pass
 
     @Override
     public void onBindViewHolder(@NonNull PassengerViewHolder holder, int position) {
-        Passenger passenger = passengerList.get(position);
+        Passenger passenger = getItem(position);
 
         holder.tvName.setText(passenger.getFullName());
         holder.tvEmail.setText(passenger.getEmail());
         holder.tvMembership.setText(passenger.getMembershipLevel());
+        int bookings = passenger.getBookingCount();
+        holder.tvBookingCount.setText(holder.itemView.getResources()
+                .getQuantityString(R.plurals.booking_count, bookings, bookings));
 
-        // Load profile image if available
-        if (passenger.getProfileImagePath() != null && !passenger.getProfileImagePath().isEmpty()) {
-            android.graphics.Bitmap bitmap = ImageUtils.decodeBase64(passenger.getProfileImagePath());
-            if (bitmap != null) {
-                holder.ivProfile.setImageBitmap(bitmap);
-            } else {
-                holder.ivProfile.setImageResource(android.R.drawable.ic_menu_gallery);
-            }
-        } else {
-            holder.ivProfile.setImageResource(android.R.drawable.ic_menu_gallery);
-        }
+        // Load profile image if available (decoded off the main thread and cached).
+        // The thumbnail is enough for the avatar, passengers without one fall back
+        // to the full image if it is here
+        String avatarHash = passenger.getThumbnailHash() != null
+                ? passenger.getThumbnailHash() : passenger.getProfileImageHash();
+        AvatarLoader.getInstance().load(holder.ivProfile, passenger.getId(), avatarHash);
 
         // Edit button click
         holder.btnEdit.setOnClickListener(v -> {
@@ -80,13 +100,16 @@ public class PassengerAdapter extends RecyclerView.Adapter<PassengerAdapter.Pass
     }
 
     @Override
-    public int getItemCount() {
-        return passengerList.size();
+    public void onViewRecycled(@NonNull PassengerViewHolder holder) {
+        super.onViewRecycled(holder);
+        // Drop any decode still pending for the row that scrolled away and hand
+        // its bitmap back for reuse
+        AvatarLoader.getInstance().cancel(holder.ivProfile);
     }
 
-    public void updateList(List<Passenger> newList) {
-        this.passengerList = newList;
-        notifyDataSetChanged();
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     static class PassengerViewHolder extends RecyclerView.ViewHolder {
@@ -94,6 +117,7 @@ public class PassengerAdapter extends RecyclerView.Adapter<PassengerAdapter.Pass
         TextView tvName;
         TextView tvEmail;
         TextView tvMembership;
+        TextView tvBookingCount;
         ImageView btnEdit;
         ImageView btnDelete;
 
@@ -103,6 +127,7 @@ public class PassengerAdapter extends RecyclerView.Adapter<PassengerAdapter.Pass
             tvName = itemView.findViewById(R.id.tv_name);
             tvEmail = itemView.findViewById(R.id.tv_email);
             tvMembership = itemView.findViewById(R.id.tv_membership);
+            tvBookingCount = itemView.findViewById(R.id.tv_booking_count);
             btnEdit = itemView.findViewById(R.id.btn_edit);
             btnDelete = itemView.findViewById(R.id.btn_delete);
         }
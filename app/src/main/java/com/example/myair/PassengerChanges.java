@@ -0,0 +1,65 @@
+package com.example.myair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Passenger changes returned by the server since a sync token. When
+ * {@link #isFullSnapshot()} is true the list contains every passenger and
+ * anything not in it should be removed locally.
+ */
+public class PassengerChanges {
+    private List<Passenger> passengers = new ArrayList<>();
+    private List<Integer> deletedIds = new ArrayList<>();
+    private String syncToken;
+    private String etag;
+    private boolean fullSnapshot;
+
+    public PassengerChanges() {
+    }
+
+    public PassengerChanges(List<Passenger> passengers, List<Integer> deletedIds,
+                            String syncToken, boolean fullSnapshot) {
+        this.passengers = passengers;
+        this.deletedIds = deletedIds;
+        this.syncToken = syncToken;
+        this.fullSnapshot = fullSnapshot;
+    }
+
+    public List<Passenger> getPassengers() {
+        return passengers;
+    }
+
+    public List<Integer> getDeletedIds() {
+        return deletedIds;
+    }
+
+    public String getSyncToken() {
+        return syncToken;
+    }
+
+    public void setSyncToken(String syncToken) {
+        this.syncToken = syncToken;
+    }
+
+    // ETag of the response these changes came from, or null if it had none
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public boolean isFullSnapshot() {
+        return fullSnapshot;
+    }
+
+    public void setFullSnapshot(boolean fullSnapshot) {
+        this.fullSnapshot = fullSnapshot;
+    }
+
+    public int getChangeCount() {
+        return passengers.size() + deletedIds.size();
+    }
+}
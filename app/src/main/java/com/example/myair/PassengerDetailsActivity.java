@@ -2,8 +2,8 @@ package com.example.myair;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -14,10 +14,8 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
-import java.io.File;
-import java.util.List;
-
 public class PassengerDetailsActivity extends AppCompatActivity {
+    private static final String TAG = "PassengerDetailsActivity";
 
     private ImageView imgProfileLarge, backButton;
     private TextView tvDetailName, tvDetailMembership, tvDetailEmail, tvDetailPhone, tvDetailDob;
@@ -25,7 +23,7 @@ public class PassengerDetailsActivity extends AppCompatActivity {
     private RecyclerView recyclerBookings;
     private FloatingActionButton fabBookFlight;
 
-    private DatabaseHelper dbHelper;
+    private PassengerRepository repository;
     private BookingAdapter bookingAdapter;
     private Passenger passenger;
     private int passengerId;
@@ -36,7 +34,7 @@ public class PassengerDetailsActivity extends AppCompatActivity {
         setContentView(R.layout.activity_passenger_details);
 
         initViews();
-        dbHelper = new DatabaseHelper(this);
+        repository = PassengerRepository.getInstance(this);
 
         // Get passenger ID from intent
         passengerId = getIntent().getIntExtra("PASSENGER_ID", -1);
@@ -51,6 +49,9 @@ public class PassengerDetailsActivity extends AppCompatActivity {
         backButton.setOnClickListener(v -> finish());
 
         fabBookFlight.setOnClickListener(v -> {
+            if (passenger == null) {
+                return; // Still loading
+            }
             Intent intent = new Intent(PassengerDetailsActivity.this, BookFlightActivity.class);
             intent.putExtra("PASSENGER_ID", passengerId);
             intent.putExtra("PASSENGER_NAME", passenger.getFullName());
@@ -71,49 +72,84 @@ public class PassengerDetailsActivity extends AppCompatActivity {
         fabBookFlight = findViewById(R.id.fab_book_flight);
 
         recyclerBookings.setLayoutManager(new LinearLayoutManager(this));
+        bookingAdapter = new BookingAdapter(this);
+        recyclerBookings.setAdapter(bookingAdapter);
     }
 
     private void loadPassengerDetails() {
-        passenger = dbHelper.getPassenger(passengerId);
-        if (passenger == null) {
-            finish();
-            return;
-        }
+        repository.getPassenger(passengerId, result -> {
+            if (isDestroyed()) {
+                return;
+            }
+            if (result == null) {
+                finish();
+                return;
+            }
+            passenger = result;
+            showPassengerDetails();
+        });
+    }
 
+    private void showPassengerDetails() {
         tvDetailName.setText(passenger.getFullName());
         tvDetailMembership.setText(passenger.getMembershipLevel());
         tvDetailEmail.setText("Email: " + passenger.getEmail());
         tvDetailPhone.setText("Phone: " + passenger.getPhone());
         tvDetailDob.setText("DOB: " + passenger.getDateOfBirth());
 
-        // Load profile image (Base64 encoded)
-        if (passenger.getProfileImagePath() != null && !passenger.getProfileImagePath().isEmpty()) {
-            try {
-                // Decode Base64 to Bitmap
-                byte[] decodedBytes = android.util.Base64.decode(passenger.getProfileImagePath(), android.util.Base64.DEFAULT);
-                Bitmap bitmap = BitmapFactory.decodeByteArray(decodedBytes, 0, decodedBytes.length);
-                if (bitmap != null) {
-                    imgProfileLarge.setImageBitmap(bitmap);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                // Keep default image if decoding fails
-            }
+        // Load profile image from the image store
+        if (passenger.getProfileImageHash() != null) {
+            showProfileImage(passenger.getProfileImageHash());
+        } else if (passenger.getThumbnailHash() != null) {
+            // Synced passengers only come with the thumbnail, show it until the
+            // full image has been downloaded
+            showProfileImage(passenger.getThumbnailHash());
+            loadFullProfileImage();
         }
     }
 
+    private void showProfileImage(String hash) {
+        // Decoded off the main thread at the size of the profile view, reopening
+        // the screen reads it from the disk cache
+        int size = getResources().getDimensionPixelSize(R.dimen.profile_image_large);
+        AvatarLoader.getInstance().loadImage(imgProfileLarge, hash, size, Bitmap.Config.ARGB_8888);
+    }
+
+    private void loadFullProfileImage() {
+        NetworkService.getInstance(this).getProfileImage(passengerId,
+                new NetworkService.NetworkCallback<byte[]>() {
+            @Override
+            public void onSuccess(byte[] image) {
+                repository.saveProfileImage(passengerId, image, hash -> {
+                    if (hash != null && !isDestroyed()) {
+                        showProfileImage(hash);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                // Keep showing the thumbnail
+                Log.w(TAG, "Full profile image not loaded: " + error);
+            }
+        });
+    }
+
     private void loadBookings() {
-        List<FlightBooking> bookings = dbHelper.getBookingsByPassengerId(passengerId);
-        
-        if (bookings.isEmpty()) {
-            tvNoBookings.setVisibility(View.VISIBLE);
-            recyclerBookings.setVisibility(View.GONE);
-        } else {
-            tvNoBookings.setVisibility(View.GONE);
-            recyclerBookings.setVisibility(View.VISIBLE);
-            bookingAdapter = new BookingAdapter(this, bookings);
-            recyclerBookings.setAdapter(bookingAdapter);
-        }
+        repository.getBookingsByPassengerId(passengerId, bookings -> {
+            if (isDestroyed()) {
+                return;
+            }
+            if (bookings.isEmpty()) {
+                tvNoBookings.setVisibility(View.VISIBLE);
+                recyclerBookings.setVisibility(View.GONE);
+            } else {
+                tvNoBookings.setVisibility(View.GONE);
+                recyclerBookings.setVisibility(View.VISIBLE);
+            }
+            // Only bookings that changed since the last load are rebound
+            bookingAdapter.submitList(bookings);
+        });
     }
 
     @Override
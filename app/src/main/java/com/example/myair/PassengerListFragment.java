@@ -2,9 +2,14 @@ package com.example.myair;
 
 import android.app.AlertDialog;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -19,11 +24,28 @@ import java.util.List;
 
 public class PassengerListFragment extends Fragment implements PassengerAdapter.OnPassengerClickListener {
 
+    private static final int PAGE_SIZE = 50;
+    // Fetch the next page while this many rows are still below the last visible one
+    private static final int PREFETCH_DISTANCE = 20;
+    private static final int SEARCH_LIMIT = 50;
+    // Wait for typing to pause before querying
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+
     private RecyclerView recyclerView;
     private TextView tvEmptyMessage;
+    private EditText etSearch;
     private PassengerAdapter adapter;
-    private DatabaseHelper dbHelper;
+    private PassengerRepository repository;
     private List<Passenger> passengerList;
+    private boolean loadingPage;
+    private boolean lastPageLoaded;
+    // Bumped on every reload so pages requested for an older list are dropped
+    private int listGeneration;
+    private String searchQuery = "";
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = this::showLocalPassengers;
+    // New passengers moved to their server ids, reload so rows carry those
+    private final OutboxReplicator.OnPassengersRemappedListener remapListener = this::showLocalPassengers;
 
     @Nullable
     @Override
@@ -32,118 +54,196 @@ public class PassengerListFragment extends Fragment implements PassengerAdapter.
 
         recyclerView = view.findViewById(R.id.recycler_view_passengers);
         tvEmptyMessage = view.findViewById(R.id.tv_empty_message);
+        etSearch = view.findViewById(R.id.et_search);
 
-        dbHelper = new DatabaseHelper(getContext());
+        repository = PassengerRepository.getInstance(getContext());
         passengerList = new ArrayList<>();
 
         setupRecyclerView();
+        setupSearch();
+        OutboxReplicator.getInstance(getContext()).addOnPassengersRemappedListener(remapListener);
         loadPassengers();
 
         return view;
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        // Recycles the bound rows, so AvatarLoader gets their bitmaps back
+        recyclerView.setAdapter(null);
+        searchHandler.removeCallbacks(searchRunnable);
+        OutboxReplicator.getInstance(getContext()).removeOnPassengersRemappedListener(remapListener);
+        NetworkService.getInstance(getContext()).cancelAll(this);
+    }
+
     private void setupRecyclerView() {
-        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-        adapter = new PassengerAdapter(getContext(), passengerList, this);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        recyclerView.setLayoutManager(layoutManager);
+        adapter = new PassengerAdapter(getContext(), this);
         recyclerView.setAdapter(adapter);
+
+        // Load more passengers as the list nears its end
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() + PREFETCH_DISTANCE
+                        >= adapter.getItemCount()) {
+                    loadNextPage();
+                }
+            }
+        });
     }
 
     public void loadPassengers() {
+        if (adapter == null) {
+            // View not created yet, onCreateView will load the list
+            return;
+        }
+
         // First, load from local SQLite (immediate display)
-        passengerList = dbHelper.getAllPassengers();
-        adapter.updateList(passengerList);
-        updateEmptyState();
+        showLocalPassengers();
         
-        // Then, try to fetch from server (async update)
-        NetworkService.getInstance(getContext()).getAllPassengers(
-            new NetworkService.NetworkCallback<org.json.JSONArray>() {
-                @Override
-                public void onSuccess(org.json.JSONArray response) {
-                    try {
-                        // Parse server response
-                        List<Passenger> serverPassengers = new ArrayList<>();
-                        
-                        for (int i = 0; i < response.length(); i++) {
-                            org.json.JSONObject passengerJson = response.getJSONObject(i);
-                            
-                            Passenger passenger = new Passenger();
-                            passenger.setId(passengerJson.getInt("id"));
-                            passenger.setFullName(passengerJson.getString("full_name"));
-                            passenger.setEmail(passengerJson.getString("email"));
-                            passenger.setPhone(passengerJson.getString("phone"));
-                            passenger.setDateOfBirth(passengerJson.optString("date_of_birth", ""));
-                            passenger.setMembershipLevel(passengerJson.optString("membership_level", "Economy"));
-                            passenger.setActive(passengerJson.optBoolean("is_active", true));
-                            passenger.setProfileImagePath(passengerJson.optString("profile_image", ""));
-                            
-                            serverPassengers.add(passenger);
-                        }
-                        
-                        // SYNC TO SQLITE: Clear local database and insert server data
+        // Then, ask the server for what changed since the last sync (async update)
+        // Unchanged since then is a 304 with no body, and nothing to merge
+        repository.getPassengerSyncState(state -> {
+            if (!isAdded()) {
+                return;
+            }
+            NetworkService.getInstance(getContext()).getPassengerChanges(
+                state.getSyncToken(), state.getEtag(), this,
+                new NetworkService.NetworkCallback<PassengerChanges>() {
+                    @Override
+                    public void onSuccess(PassengerChanges changes) {
+                        // SYNC TO SQLITE: Merge the changes in one transaction
                         // This ensures server is the source of truth
-                        syncServerDataToSQLite(serverPassengers);
-                        
-                        // Update UI with server data
-                        passengerList.clear();
-                        passengerList.addAll(serverPassengers);
-                        adapter.updateList(passengerList);
-                        updateEmptyState();
-                        
-                        Toast.makeText(getContext(), "Synced with server (" + serverPassengers.size() + " passengers)", Toast.LENGTH_SHORT).show();
-                        
-                    } catch (org.json.JSONException e) {
-                        Toast.makeText(getContext(), "Error parsing server data: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                        repository.applyChanges(changes, report -> {
+                            // Update UI with the merged data
+                            if (isAdded() && report.getTotalRows() > 0) {
+                                showLocalPassengers();
+                                Toast.makeText(getContext(), "Synced with server (" + changes.getChangeCount() + " changes)", Toast.LENGTH_SHORT).show();
+                            }
+                        });
                     }
-                }
-                
-                @Override
-                public void onError(String error) {
-                    // Silently fail - we already have local data
-                    // Only show error if list is empty
-                    if (passengerList.isEmpty()) {
-                        Toast.makeText(getContext(), "Using offline mode: " + error, Toast.LENGTH_SHORT).show();
+                    
+                    @Override
+                    public void onError(String error) {
+                        // Silently fail - we already have local data
+                        // Only show error if list is empty
+                        if (isAdded() && passengerList.isEmpty()) {
+                            Toast.makeText(getContext(), "Using offline mode: " + error, Toast.LENGTH_SHORT).show();
+                        }
                     }
-                }
-            });
+                });
+        });
     }
-    
-    private void syncServerDataToSQLite(List<Passenger> serverPassengers) {
-        // Get all local passengers
-        List<Passenger> localPassengers = dbHelper.getAllPassengers();
-        
-        // Create a map of server passenger IDs for quick lookup
-        java.util.Set<Integer> serverIds = new java.util.HashSet<>();
-        for (Passenger serverPassenger : serverPassengers) {
-            serverIds.add(serverPassenger.getId());
-            
-            // Check if passenger exists locally
-            boolean existsLocally = false;
-            for (Passenger localPassenger : localPassengers) {
-                if (localPassenger.getId() == serverPassenger.getId()) {
-                    existsLocally = true;
-                    break;
+
+    private void setupSearch() {
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchQuery = s.toString().trim();
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+            }
+        });
+    }
+
+    private void showLocalPassengers() {
+        if (!searchQuery.isEmpty()) {
+            showSearchResults();
+            return;
+        }
+
+        // Reload as many rows as are already shown so the scroll position holds
+        int limit = Math.max(PAGE_SIZE, passengerList.size());
+        int generation = ++listGeneration;
+        loadingPage = true;
+        repository.getPassengersPage(DatabaseHelper.FIRST_PAGE, limit,
+                new PassengerRepository.Callback<List<Passenger>>() {
+            @Override
+            public void onResult(List<Passenger> passengers) {
+                if (!isAdded() || generation != listGeneration) {
+                    return;
                 }
+                loadingPage = false;
+                lastPageLoaded = passengers.size() < limit;
+                passengerList = passengers;
+                // Diffed off the main thread, only changed rows are rebound
+                adapter.submitList(passengerList);
+                updateEmptyState();
+            }
+
+            @Override
+            public void onError(Exception error) {
+                pageFailed(generation);
             }
-            
-            if (existsLocally) {
-                // Update existing passenger
-                dbHelper.updatePassenger(serverPassenger);
-            } else {
-                // Add new passenger from server WITH SERVER ID
-                dbHelper.addPassengerWithId(serverPassenger);
+        });
+    }
+
+    private void showSearchResults() {
+        int generation = ++listGeneration;
+        // Results are ranked, not paged
+        lastPageLoaded = true;
+        repository.searchPassengers(searchQuery, SEARCH_LIMIT, passengers -> {
+            if (!isAdded() || generation != listGeneration) {
+                return;
             }
+            passengerList = passengers;
+            adapter.submitList(passengerList);
+            updateEmptyState();
+        });
+    }
+
+    private void loadNextPage() {
+        if (loadingPage || lastPageLoaded || passengerList.isEmpty()) {
+            return;
         }
-        
-        // Delete local passengers that don't exist on server
-        for (Passenger localPassenger : localPassengers) {
-            if (!serverIds.contains(localPassenger.getId())) {
-                dbHelper.deletePassenger(localPassenger.getId());
+        int beforeId = passengerList.get(passengerList.size() - 1).getId();
+        int generation = listGeneration;
+        loadingPage = true;
+        repository.getPassengersPage(beforeId, PAGE_SIZE, new PassengerRepository.Callback<List<Passenger>>() {
+            @Override
+            public void onResult(List<Passenger> page) {
+                if (!isAdded() || generation != listGeneration) {
+                    return;
+                }
+                loadingPage = false;
+                lastPageLoaded = page.size() < PAGE_SIZE;
+                // Submitted lists must not change, so append to a copy
+                List<Passenger> next = new ArrayList<>(passengerList.size() + page.size());
+                next.addAll(passengerList);
+                next.addAll(page);
+                passengerList = next;
+                adapter.submitList(passengerList);
             }
+
+            @Override
+            public void onError(Exception error) {
+                pageFailed(generation);
+            }
+        });
+    }
+
+    // Let the next scroll try the page again
+    private void pageFailed(int generation) {
+        if (isAdded() && generation == listGeneration) {
+            loadingPage = false;
         }
     }
     
     private void updateEmptyState() {
         if (passengerList.isEmpty()) {
+            tvEmptyMessage.setText(searchQuery.isEmpty()
+                    ? R.string.msg_no_passengers : R.string.msg_no_search_results);
             tvEmptyMessage.setVisibility(View.VISIBLE);
             recyclerView.setVisibility(View.GONE);
         } else {
@@ -154,10 +254,16 @@ public class PassengerListFragment extends Fragment implements PassengerAdapter.
 
     @Override
     public void onEditClick(Passenger passenger) {
-        // Switch to add passenger tab and load data
-        if (getActivity() instanceof PassengerActivity) {
-            ((PassengerActivity) getActivity()).editPassenger(passenger);
-        }
+        // List rows are partial, load the whole passenger before editing
+        repository.getPassenger(passenger.getId(), fullPassenger -> {
+            if (fullPassenger == null || !isAdded()) {
+                return;
+            }
+            // Switch to add passenger tab and load data
+            if (getActivity() instanceof PassengerActivity) {
+                ((PassengerActivity) getActivity()).editPassenger(fullPassenger);
+            }
+        });
     }
 
     @Override
@@ -166,26 +272,24 @@ public class PassengerListFragment extends Fragment implements PassengerAdapter.
                 .setTitle(R.string.btn_delete)
                 .setMessage(R.string.msg_confirm_delete)
                 .setPositiveButton(android.R.string.yes, (dialog, which) -> {
-                    // Delete from local SQLite first
-                    dbHelper.deletePassenger(passenger.getId());
-                    
-                    // Sync deletion with server
-                    NetworkService.getInstance(getContext()).deletePassenger(passenger.getId(),
-                        new NetworkService.NetworkCallback<org.json.JSONObject>() {
-                            @Override
-                            public void onSuccess(org.json.JSONObject response) {
-                                // Refresh UI after successful server deletion
-                                loadPassengers();
-                                Toast.makeText(getContext(), "Passenger deleted", Toast.LENGTH_SHORT).show();
+                    // Deleted locally, OutboxReplicator deletes it on the server
+                    repository.deletePassenger(passenger.getId(), new PassengerRepository.Callback<Void>() {
+                        @Override
+                        public void onResult(Void result) {
+                            if (!isAdded()) {
+                                return;
                             }
-                            
-                            @Override
-                            public void onError(String error) {
-                                // Still refresh UI even if server sync fails (already deleted locally)
-                                loadPassengers();
-                                Toast.makeText(getContext(), "Deleted locally. Server sync failed", Toast.LENGTH_SHORT).show();
+                            showLocalPassengers();
+                            Toast.makeText(getContext(), R.string.msg_passenger_deleted, Toast.LENGTH_SHORT).show();
+                        }
+
+                        @Override
+                        public void onError(Exception error) {
+                            if (isAdded()) {
+                                Toast.makeText(getContext(), "Failed to delete passenger", Toast.LENGTH_SHORT).show();
                             }
-                        });
+                        }
+                    });
                 })
                 .setNegativeButton(android.R.string.no, null)
                 .show();
@@ -0,0 +1,198 @@
+package com.example.myair;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Volley request for the passenger list endpoint. The body is parsed with a
+ * streaming JsonReader straight into Passenger objects on the network thread,
+ * so the response is never turned into one big String or an org.json tree.
+ * Fields the app does not use (bookings, timestamps) are skipped.
+ *
+ * The list is requested compressed and response.data keeps the compressed
+ * bytes; they are inflated while parsing, so the uncompressed body is never
+ * held in memory. Asking for gzip explicitly is what turns off
+ * HttpURLConnection's transparent decompression, which would buffer the
+ * whole uncompressed body first.
+ *
+ * With the ETag of the last applied response the request is conditional: if
+ * nothing changed the server answers 304 with no body and the listener gets
+ * null, so there is nothing to parse or merge.
+ */
+public class PassengerListRequest extends Request<PassengerChanges> {
+    private static final int DECODE_BUFFER_SIZE = 8192;
+
+    private final String syncToken;
+    private final String etag;
+    private final Response.Listener<PassengerChanges> listener;
+
+    /**
+     * @param url       Passenger list URL
+     * @param syncToken Token the request was made with, or null for a full snapshot
+     * @param etag      ETag of the last applied response, or null to always get a body
+     */
+    public PassengerListRequest(String url, String syncToken, String etag,
+                                Response.Listener<PassengerChanges> listener,
+                                Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        this.syncToken = syncToken;
+        this.etag = etag;
+        this.listener = listener;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Encoding", "gzip, deflate");
+        if (etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        return headers;
+    }
+
+    @Override
+    protected Response<PassengerChanges> parseNetworkResponse(NetworkResponse response) {
+        if (response.statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return Response.success(null, null);
+        }
+        try {
+            String charset = HttpHeaderParser.parseCharset(response.headers, "UTF-8");
+            PassengerChanges changes = parse(decode(response), charset, syncToken);
+            changes.setEtag(response.headers != null ? response.headers.get("ETag") : null);
+            return Response.success(changes, HttpHeaderParser.parseCacheHeaders(response));
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    @Override
+    protected void deliverResponse(PassengerChanges response) {
+        listener.onResponse(response);
+    }
+
+    // The body as it was before Content-Encoding was applied
+    static InputStream decode(NetworkResponse response) throws IOException {
+        InputStream body = new ByteArrayInputStream(response.data);
+        String encoding = response.headers != null ? response.headers.get("Content-Encoding") : null;
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            return new GZIPInputStream(body, DECODE_BUFFER_SIZE);
+        } else if ("deflate".equalsIgnoreCase(encoding)) {
+            return new InflaterInputStream(body);
+        }
+        return body;
+    }
+
+    /**
+     * Parse a passenger list response: { "data": [...], "deleted": [...], "sync_token": "..." }
+     */
+    static PassengerChanges parse(InputStream in, String charset, String syncToken) throws IOException {
+        List<Passenger> passengers = new ArrayList<>();
+        List<Integer> deletedIds = new ArrayList<>();
+        String nextToken = syncToken;
+
+        JsonReader reader = new JsonReader(new InputStreamReader(in, charset));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (name.equals("data")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        passengers.add(readPassenger(reader));
+                    }
+                    reader.endArray();
+                } else if (name.equals("deleted")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        deletedIds.add(reader.nextInt());
+                    }
+                    reader.endArray();
+                } else if (name.equals("sync_token")) {
+                    nextToken = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+
+        return new PassengerChanges(passengers, deletedIds, nextToken, syncToken == null);
+    }
+
+    private static Passenger readPassenger(JsonReader reader) throws IOException {
+        Passenger passenger = new Passenger();
+        passenger.setDateOfBirth("");
+        passenger.setMembershipLevel("Economy");
+        passenger.setActive(true);
+        passenger.setProfileImagePath("");
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    passenger.setId(reader.nextInt());
+                    break;
+                case "full_name":
+                    passenger.setFullName(reader.nextString());
+                    break;
+                case "email":
+                    passenger.setEmail(reader.nextString());
+                    break;
+                case "phone":
+                    passenger.setPhone(reader.nextString());
+                    break;
+                case "date_of_birth":
+                    passenger.setDateOfBirth(reader.nextString());
+                    break;
+                case "membership_level":
+                    passenger.setMembershipLevel(reader.nextString());
+                    break;
+                case "is_active":
+                    passenger.setActive(reader.nextBoolean());
+                    break;
+                case "profile_image":
+                    passenger.setProfileImagePath(reader.nextString());
+                    break;
+                case "profile_thumbnail":
+                    passenger.setThumbnail(reader.nextString());
+                    break;
+                case "profile_image_url":
+                    passenger.setProfileImageUrl(reader.nextString());
+                    break;
+                default:
+                    // bookings, createdAt, updatedAt, ...
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return passenger;
+    }
+}
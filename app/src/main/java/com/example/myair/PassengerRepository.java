@@ -0,0 +1,184 @@
+package com.example.myair;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous access to DatabaseHelper. Every read and write runs on a
+ * background executor and results are delivered on the main thread, so
+ * database work never blocks the UI. Failures reach Callback.onError.
+ *
+ * Writes go through a single thread so they are applied in the order they
+ * were submitted. Their queue is unbounded: a user's edit is never dropped,
+ * while reads beyond the bounded read queue are rejected. Reads use a small
+ * pool and, thanks to WAL, do not wait for a running write. User edits are
+ * also queued in the outbox and replicated to the server by OutboxReplicator.
+ */
+public class PassengerRepository {
+    private static final String TAG = "PassengerRepository";
+    private static final int READ_THREADS = 2;
+    private static final int READ_QUEUE_CAPACITY = 64;
+
+    private static PassengerRepository instance;
+
+    private final DatabaseHelper dbHelper;
+    private final ImageStore imageStore;
+    private final OutboxReplicator replicator;
+    private final ExecutorService readExecutor;
+    private final ExecutorService writeExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private PassengerRepository(Context context) {
+        dbHelper = DatabaseHelper.getInstance(context);
+        imageStore = ImageStore.getInstance(context);
+        replicator = OutboxReplicator.getInstance(context);
+        readExecutor = new ThreadPoolExecutor(READ_THREADS, READ_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(READ_QUEUE_CAPACITY));
+        writeExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+    }
+
+    public static synchronized PassengerRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new PassengerRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // ==================== PASSENGER OPERATIONS ====================
+
+    public void getPassengersPage(int beforeId, int limit, Callback<List<Passenger>> callback) {
+        read(() -> dbHelper.getPassengersPage(beforeId, limit), callback);
+    }
+
+    public void searchPassengers(String query, int limit, Callback<List<Passenger>> callback) {
+        read(() -> dbHelper.searchPassengers(query, limit), callback);
+    }
+
+    public void getPassenger(int id, Callback<Passenger> callback) {
+        read(() -> dbHelper.getPassenger(id), callback);
+    }
+
+    public void addPassenger(Passenger passenger, Callback<Long> callback) {
+        edit(() -> dbHelper.addPassenger(passenger), callback);
+    }
+
+    public void updatePassenger(Passenger passenger, Callback<Integer> callback) {
+        edit(() -> dbHelper.updatePassenger(passenger), callback);
+    }
+
+    /**
+     * Store a full profile image downloaded from the server and record its
+     * hash on the passenger. The result is the hash, or null if the bytes
+     * could not be stored.
+     */
+    public void saveProfileImage(int id, byte[] image, Callback<String> callback) {
+        write(() -> {
+            String hash = imageStore.put(image);
+            if (hash != null) {
+                dbHelper.setProfileImage(id, hash);
+            }
+            return hash;
+        }, callback);
+    }
+
+    public void deletePassenger(int id, Callback<Void> callback) {
+        edit(() -> {
+            dbHelper.deletePassenger(id);
+            return null;
+        }, callback);
+    }
+
+    // ==================== SYNC OPERATIONS ====================
+
+    public void getPassengerSyncState(Callback<DatabaseHelper.SyncState> callback) {
+        read(dbHelper::getPassengerSyncState, callback);
+    }
+
+    public void applyChanges(PassengerChanges changes, Callback<DatabaseHelper.SyncReport> callback) {
+        write(() -> dbHelper.applyChanges(changes), callback);
+    }
+
+    // ==================== BOOKING OPERATIONS ====================
+
+    public void addBooking(int passengerId, String flightNumber, String bookingDate,
+                           String seatNumber, String status, Callback<Long> callback) {
+        edit(() -> dbHelper.addBooking(passengerId, flightNumber, bookingDate, seatNumber, status),
+                callback);
+    }
+
+    public void getBookingsByPassengerId(int passengerId, Callback<List<FlightBooking>> callback) {
+        read(() -> dbHelper.getBookingsByPassengerId(passengerId), callback);
+    }
+
+    // ==================== HELPER METHODS ====================
+
+    private <T> void read(Callable<T> task, Callback<T> callback) {
+        submit(readExecutor, task, callback);
+    }
+
+    private <T> void write(Callable<T> task, Callback<T> callback) {
+        submit(writeExecutor, task, callback);
+    }
+
+    // A write the user made: once it is stored, replicate it to the server
+    private <T> void edit(Callable<T> task, Callback<T> callback) {
+        write(() -> {
+            T result = task.call();
+            replicator.requestSync();
+            return result;
+        }, callback);
+    }
+
+    private <T> void submit(ExecutorService executor, Callable<T> task, Callback<T> callback) {
+        try {
+            executor.execute(() -> {
+                try {
+                    T result = task.call();
+                    if (callback != null) {
+                        mainHandler.post(() -> callback.onResult(result));
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Database operation failed: " + e.getMessage(), e);
+                    fail(callback, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Database queue is full, operation dropped", e);
+            fail(callback, e);
+        }
+    }
+
+    private <T> void fail(Callback<T> callback, Exception error) {
+        if (callback != null) {
+            mainHandler.post(() -> callback.onError(error));
+        }
+    }
+
+    // ==================== CALLBACK INTERFACE ====================
+
+    /**
+     * Receives the result of a database operation on the main thread
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+
+        /**
+         * The operation threw or was rejected, so onResult will not be
+         * called. Override when the caller waits for the result, e.g. to
+         * reset a loading flag. Nothing to do by default.
+         */
+        default void onError(Exception error) {
+        }
+    }
+}
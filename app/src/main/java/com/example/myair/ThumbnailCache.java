@@ -0,0 +1,103 @@
+package com.example.myair;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Disk tier under the in-memory avatar cache. Keeps images from ImageStore
+ * already decoded and scaled to the size they are shown at, as raw pixels, so
+ * after a cold start they are copied straight into a Bitmap instead of being
+ * decoded from JPEG again. Lives in the cache directory: the system may clear
+ * it, and everything in it can be rebuilt from ImageStore.
+ *
+ * Use it through {@link ImageUtils#decodeCached}.
+ */
+public class ThumbnailCache {
+    private static final String TAG = "ThumbnailCache";
+    private static final String DIRECTORY = "thumbnails";
+    // Several hundred list avatars plus the detail images of recently opened passengers
+    private static final long MAX_BYTES = 32L * 1024 * 1024;
+    // Width and height ahead of the pixels
+    private static final int HEADER_BYTES = 8;
+
+    private static ThumbnailCache instance;
+
+    // Null if the cache directory could not be opened, every lookup then misses
+    private final DiskLruCache cache;
+
+    private ThumbnailCache(Context context) {
+        DiskLruCache opened = null;
+        try {
+            opened = new DiskLruCache(new File(context.getCacheDir(), DIRECTORY), MAX_BYTES);
+        } catch (IOException e) {
+            Log.e(TAG, "Thumbnail cache disabled: " + e.getMessage());
+        }
+        cache = opened;
+    }
+
+    public static synchronized ThumbnailCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * @param pool Bitmaps to copy the pixels into, or null to allocate a new one
+     * @return The cached bitmap of the image at this size and config, or null
+     */
+    public Bitmap get(String imageHash, int width, int height, Bitmap.Config config, BitmapPool pool) {
+        if (cache == null) {
+            return null;
+        }
+        byte[] data = cache.get(key(imageHash, width, height, config));
+        return data != null ? fromBytes(data, config, pool) : null;
+    }
+
+    public void put(String imageHash, int width, int height, Bitmap.Config config, Bitmap bitmap) {
+        if (cache == null || bitmap.getConfig() != config) {
+            return;
+        }
+        cache.put(key(imageHash, width, height, config), toBytes(bitmap));
+    }
+
+    // The image hash is content-addressed, so an entry never goes stale, it just ages out
+    static String key(String imageHash, int width, int height, Bitmap.Config config) {
+        return imageHash + "_" + width + "x" + height + "_" + config.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static byte[] toBytes(Bitmap bitmap) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + bitmap.getByteCount());
+        buffer.putInt(bitmap.getWidth());
+        buffer.putInt(bitmap.getHeight());
+        bitmap.copyPixelsToBuffer(buffer);
+        return buffer.array();
+    }
+
+    private static Bitmap fromBytes(byte[] data, Bitmap.Config config, BitmapPool pool) {
+        if (data.length < HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        if (buffer.remaining() < width * height * BitmapPool.bytesPerPixel(config)) {
+            return null;
+        }
+        Bitmap bitmap = pool != null ? pool.get(width, height, config) : null;
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+        bitmap.copyPixelsFromBuffer(buffer);
+        return bitmap;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.myair;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for eviction and journal replay in DiskLruCache.
+ */
+public class DiskLruCacheTest {
+    private static final long BUDGET = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void put_evictsLeastRecentlyUsedPastBudget() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), BUDGET);
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        cache.get("a");
+        cache.put("c", new byte[40]);
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(80, cache.size());
+        assertFalse(new File(folder.getRoot(), "b").exists());
+    }
+
+    @Test
+    public void reopen_replaysEntriesAndRecencyFromJournal() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), BUDGET);
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        cache.get("a");
+        cache.close();
+
+        DiskLruCache reopened = new DiskLruCache(folder.getRoot(), BUDGET);
+        assertEquals(2, reopened.entryCount());
+        assertEquals(80, reopened.size());
+
+        // b was used least recently before the restart
+        reopened.put("c", new byte[40]);
+        assertNull(reopened.get("b"));
+        assertNotNull(reopened.get("a"));
+    }
+
+    @Test
+    public void reopen_dropsStrayFilesAndTornJournalLines() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), BUDGET);
+        cache.put("a", new byte[40]);
+        cache.close();
+
+        // A write that crashed before its PUT line, and a half-written line
+        assertTrue(new File(folder.getRoot(), "orphan").createNewFile());
+        try (Writer journal = new FileWriter(new File(folder.getRoot(), DiskLruCache.JOURNAL_FILE), true)) {
+            journal.write("PUT orphan");
+        }
+
+        DiskLruCache reopened = new DiskLruCache(folder.getRoot(), BUDGET);
+        assertEquals(1, reopened.entryCount());
+        assertNotNull(reopened.get("a"));
+        assertFalse(new File(folder.getRoot(), "orphan").exists());
+    }
+
+    @Test
+    public void get_dropsEntryWhoseFileWasDeleted() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), BUDGET);
+        cache.put("a", new byte[40]);
+        assertTrue(new File(folder.getRoot(), "a").delete());
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void put_rejectsValuesLargerThanBudget() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), BUDGET);
+        assertFalse(cache.put("big", new byte[(int) BUDGET + 1]));
+        assertEquals(0, cache.entryCount());
+    }
+
+    @Test
+    public void journal_isCompactedWhenReadsPileUp() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), BUDGET);
+        cache.put("a", new byte[10]);
+        for (int i = 0; i < 10_000; i++) {
+            cache.get("a");
+        }
+        cache.close();
+
+        long lines = Files.readAllLines(new File(folder.getRoot(), DiskLruCache.JOURNAL_FILE).toPath()).size();
+        assertTrue("journal has " + lines + " lines", lines < 2_100);
+    }
+}
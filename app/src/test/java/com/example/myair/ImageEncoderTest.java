@@ -0,0 +1,76 @@
+package com.example.myair;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the quality search in ImageEncoder.
+ */
+public class ImageEncoderTest {
+    private static final long BUDGET = 24 * 1024;
+
+    @Test
+    public void searchQuality_findsHighestQualityWithinBudget() {
+        // Roughly how WebP sizes grow with quality for a profile photo
+        RecordingSize size = new RecordingSize(quality -> 8_000 + quality * 250L);
+
+        int quality = ImageEncoder.searchQuality(50, 90, BUDGET, size);
+
+        assertEquals(66, quality);
+        assertTrue(size.at(quality) <= BUDGET);
+        assertTrue(size.at(quality + 1) > BUDGET);
+        // Binary search, not a scan over the range
+        assertTrue("probed " + size.probes, size.probes.size() <= 8);
+    }
+
+    @Test
+    public void searchQuality_stopsAtMaximumWhenItFits() {
+        RecordingSize size = new RecordingSize(quality -> 1_000);
+
+        assertEquals(90, ImageEncoder.searchQuality(50, 90, BUDGET, size));
+        assertEquals(1, size.probes.size());
+    }
+
+    @Test
+    public void searchQuality_failsWhenMinimumDoesNotFit() {
+        RecordingSize size = new RecordingSize(quality -> BUDGET + quality);
+
+        assertEquals(-1, ImageEncoder.searchQuality(50, 90, BUDGET, size));
+    }
+
+    @Test
+    public void searchQuality_treatsFailedCompressionAsTooLarge() {
+        RecordingSize size = new RecordingSize(quality -> quality > 70 ? Long.MAX_VALUE : 100);
+
+        assertEquals(70, ImageEncoder.searchQuality(50, 90, BUDGET, size));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsQualityWhereWebpTurnsLossless() {
+        new ImageEncoder(ImageEncoder.Format.WEBP_LOSSY, 400, BUDGET, 50, 100);
+    }
+
+    private static class RecordingSize implements IntToLongFunction {
+        private final IntToLongFunction size;
+        final List<Integer> probes = new ArrayList<>();
+
+        RecordingSize(IntToLongFunction size) {
+            this.size = size;
+        }
+
+        @Override
+        public long applyAsLong(int quality) {
+            probes.add(quality);
+            return size.applyAsLong(quality);
+        }
+
+        long at(int quality) {
+            return size.applyAsLong(quality);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.myair;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the sampling math in ImageUtils.
+ */
+public class ImageUtilsTest {
+    // 48dp list thumbnail on an xxhdpi (3x) screen
+    private static final int THUMBNAIL_PX = 144;
+    private static final int ARGB_8888_BYTES = 4;
+    private static final int RGB_565_BYTES = 2;
+
+    @Test
+    public void inSampleSize_isOneWhenImageIsSmallEnough() {
+        assertEquals(1, ImageUtils.calculateInSampleSize(100, 100, THUMBNAIL_PX, THUMBNAIL_PX));
+        assertEquals(1, ImageUtils.calculateInSampleSize(400, 400, 0, 0));
+    }
+
+    @Test
+    public void inSampleSize_keepsBothSidesAtLeastRequestedSize() {
+        assertEquals(2, ImageUtils.calculateInSampleSize(400, 400, THUMBNAIL_PX, THUMBNAIL_PX));
+        assertEquals(16, ImageUtils.calculateInSampleSize(4000, 3000, THUMBNAIL_PX, THUMBNAIL_PX));
+
+        int sample = ImageUtils.calculateInSampleSize(4000, 3000, THUMBNAIL_PX, THUMBNAIL_PX);
+        assertTrue(3000 / sample >= THUMBNAIL_PX);
+    }
+
+    @Test
+    public void sampledThumbnail_usesFractionOfFullDecodeMemory() {
+        // Uploaded avatars are at most 400x400
+        long fullDecode = ImageUtils.estimateDecodedBytes(400, 400, 1, ARGB_8888_BYTES);
+        int sample = ImageUtils.calculateInSampleSize(400, 400, THUMBNAIL_PX, THUMBNAIL_PX);
+        long thumbnail = ImageUtils.estimateDecodedBytes(400, 400, sample, RGB_565_BYTES);
+
+        assertEquals(640_000, fullDecode);
+        assertEquals(80_000, thumbnail);
+        assertTrue(fullDecode / thumbnail >= 8);
+    }
+
+    @Test
+    public void sampledPhoto_avoidsFullResolutionDecode() {
+        // A 12 MP camera photo picked for upload
+        long fullDecode = ImageUtils.estimateDecodedBytes(4000, 3000, 1, ARGB_8888_BYTES);
+        int sample = ImageUtils.calculateInSampleSize(4000, 3000, 400, 400);
+        long sampled = ImageUtils.estimateDecodedBytes(4000, 3000, sample, ARGB_8888_BYTES);
+
+        assertEquals(4, sample);
+        assertTrue(fullDecode / sampled >= 16);
+    }
+}
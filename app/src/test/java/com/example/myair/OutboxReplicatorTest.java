@@ -0,0 +1,47 @@
+package com.example.myair;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the retry policy in OutboxReplicator.
+ */
+public class OutboxReplicatorTest {
+
+    @Test
+    public void backoff_doublesPerAttemptWithinJitterBounds() {
+        Random random = new Random(42);
+        for (int attempts = 1; attempts <= 6; attempts++) {
+            // 2s, 4s, 8s, ... with up to half taken off as jitter
+            long max = 2_000L << (attempts - 1);
+            for (int i = 0; i < 100; i++) {
+                long delay = OutboxReplicator.backoffMs(attempts, random);
+                assertTrue(delay >= max / 2);
+                assertTrue(delay <= max);
+            }
+        }
+    }
+
+    @Test
+    public void backoff_isCappedAtFiveMinutes() {
+        Random random = new Random(42);
+        assertTrue(OutboxReplicator.backoffMs(100, random) <= 5 * 60_000);
+        assertTrue(OutboxReplicator.backoffMs(100, random) >= 5 * 60_000 / 2);
+    }
+
+    @Test
+    public void onlyClientErrorsAreRejections() {
+        assertTrue(OutboxReplicator.isRejected(400));
+        assertTrue(OutboxReplicator.isRejected(422));
+
+        // Worth retrying
+        assertFalse(OutboxReplicator.isRejected(0));
+        assertFalse(OutboxReplicator.isRejected(408));
+        assertFalse(OutboxReplicator.isRejected(429));
+        assertFalse(OutboxReplicator.isRejected(500));
+        assertFalse(OutboxReplicator.isRejected(503));
+    }
+}
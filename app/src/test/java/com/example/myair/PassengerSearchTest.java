@@ -0,0 +1,46 @@
+package com.example.myair;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the FTS query building and ranking in DatabaseHelper.
+ */
+public class PassengerSearchTest {
+
+    @Test
+    public void prefixQuery_turnsEveryWordIntoAPrefix() {
+        assertEquals("ada* love*", DatabaseHelper.toPrefixQuery("Ada Love"));
+        assertEquals("ada* example*", DatabaseHelper.toPrefixQuery("  ada@example "));
+        assertEquals("zoë*", DatabaseHelper.toPrefixQuery("Zoë"));
+    }
+
+    @Test
+    public void prefixQuery_dropsOperatorsAndQuotes() {
+        assertEquals("", DatabaseHelper.toPrefixQuery(null));
+        assertEquals("", DatabaseHelper.toPrefixQuery(" \"*- "));
+        // Lower-cased, so "OR" and "NOT" are plain words to FTS
+        assertEquals("ada* or* not* bob*", DatabaseHelper.toPrefixQuery("ada OR NOT \"bob"));
+    }
+
+    @Test
+    public void rank_prefersNameOverEmailOverPhone() {
+        // One phrase, three columns (full_name, email, phone): hits in this
+        // row, hits in all rows, rows with hits
+        int[] nameHit = {1, 3, 1, 10, 10, 0, 10, 0, 0, 10, 0};
+        int[] emailHit = {1, 3, 0, 10, 10, 1, 10, 10, 0, 10, 0};
+        int[] phoneHit = {1, 3, 0, 10, 10, 0, 10, 0, 1, 10, 10};
+
+        assertTrue(DatabaseHelper.rank(nameHit) > DatabaseHelper.rank(emailHit));
+        assertTrue(DatabaseHelper.rank(emailHit) > DatabaseHelper.rank(phoneHit));
+    }
+
+    @Test
+    public void rank_favoursRareWords() {
+        int[] common = {1, 3, 1, 1000, 1000, 0, 0, 0, 0, 0, 0};
+        int[] rare = {1, 3, 1, 2, 2, 0, 0, 0, 0, 0, 0};
+
+        assertTrue(DatabaseHelper.rank(rare) > DatabaseHelper.rank(common));
+    }
+}